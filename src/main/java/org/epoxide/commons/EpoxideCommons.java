@@ -2,6 +2,9 @@ package org.epoxide.commons;
 
 import java.util.logging.Logger;
 
+import org.epoxide.commons.logging.AsyncLogHandler;
+import org.epoxide.commons.logging.LazyLogger;
+import org.epoxide.commons.metrics.MetricRegistry;
 import org.epoxide.commons.registry.Identifier;
 
 public class EpoxideCommons {
@@ -12,11 +15,30 @@ public class EpoxideCommons {
      */
     private static Logger log = Logger.getAnonymousLogger();
 
+    /**
+     * A lazy wrapper for {@link #log}. This is used internally so that messages are only
+     * built when they will be logged.
+     */
+    private static LazyLogger lazyLog = new LazyLogger(log);
+
     /**
      * The default value to use for namespaced objects like {@link Identifier}.
      */
     private static String defaultName = "epoxide";
 
+    /**
+     * The metrics used by Epoxide Commons. Things like registry lookups and reflection are
+     * counted here once {@link #setTrackingMetrics(boolean)} is enabled, and it can be
+     * published using {@link MetricRegistry#registerMBean()}.
+     */
+    private static final MetricRegistry METRICS = new MetricRegistry("EpoxideCommons");
+
+    /**
+     * Whether or not the internal counters in {@link #METRICS} are updated. This is off by
+     * default, as some of the counters are in hot paths like registry lookups.
+     */
+    private static boolean trackMetrics = false;
+
     /**
      * Sets the logger for Epoxide Commons to use. This will create a new
      * {@link java.util.logging.Logger} using {@link Logger#getLogger(String)}.
@@ -36,6 +58,20 @@ public class EpoxideCommons {
     public static void setLogger (Logger logger) {
 
         log = logger;
+        lazyLog = new LazyLogger(logger);
+    }
+
+    /**
+     * Moves the publishing of log messages for the current logger onto a background thread.
+     * Messages are held in a bounded queue, and dropped if the queue is full. See
+     * {@link AsyncLogHandler#install(Logger, int)}.
+     *
+     * @param capacity The maximum amount of messages which can be waiting at once.
+     * @return The handler which was installed.
+     */
+    public static AsyncLogHandler enableAsyncLogging (int capacity) {
+
+        return AsyncLogHandler.install(log, capacity);
     }
 
     /**
@@ -49,6 +85,50 @@ public class EpoxideCommons {
         return log;
     }
 
+    /**
+     * Gets a lazy wrapper for the logger used by Epoxide Commons. Messages passed to this are
+     * only built if they will actually be logged, and repeated warnings can be rate limited.
+     *
+     * @return The lazy logger used by Epoxide Commons.
+     */
+    public static LazyLogger getLazyLogger () {
+
+        return lazyLog;
+    }
+
+    /**
+     * Gets the metrics for Epoxide Commons. These are updated internally, but other metrics
+     * can also be added.
+     *
+     * @return The metrics used by Epoxide Commons.
+     */
+    public static MetricRegistry getMetrics () {
+
+        return METRICS;
+    }
+
+    /**
+     * Checks if the internal counters of Epoxide Commons are being updated.
+     *
+     * @return Whether or not internal counters are updated.
+     */
+    public static boolean isTrackingMetrics () {
+
+        return trackMetrics;
+    }
+
+    /**
+     * Sets whether or not the internal counters of Epoxide Commons are updated. These count
+     * things like registry lookups, constructor lookups and weighted selections, and are off
+     * by default.
+     *
+     * @param track Whether or not internal counters should be updated.
+     */
+    public static void setTrackingMetrics (boolean track) {
+
+        trackMetrics = track;
+    }
+
     /**
      * Gets the default name for things like namespaced objects.
      *
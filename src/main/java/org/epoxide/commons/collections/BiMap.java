@@ -113,6 +113,17 @@ public class BiMap<K, V> implements Map<K, V> {
         return null;
     }
 
+    /**
+     * Estimates the amount of heap memory used by the map, not including the keys and values.
+     * This assumes both maps are HashMaps. See {@link Footprint}.
+     *
+     * @return The estimated size of the map in bytes.
+     */
+    public long estimateFootprint () {
+
+        return Footprint.object(2 * Footprint.REFERENCE) + Footprint.hashMap(this.map.size()) + Footprint.hashMap(this.inverted.size());
+    }
+
     @Override
     public void clear () {
 
@@ -0,0 +1,92 @@
+package org.epoxide.commons.collections;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * This singleton class frees the memory of direct and mapped byte buffers without waiting for
+ * them to be garbage collected. There is no public API for this, so the JVM internals are
+ * accessed through reflection. If that is not possible, freeing a buffer does nothing and the
+ * memory is released once the buffer is collected instead.
+ */
+final class DirectBuffers {
+
+    /**
+     * The Unsafe instance on Java 9 and later, which has a method to free buffers.
+     */
+    private static final Object UNSAFE;
+
+    /**
+     * The invokeCleaner method of Unsafe on Java 9 and later.
+     */
+    private static final Method INVOKE_CLEANER;
+
+    static {
+
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        }
+
+        catch (final ReflectiveOperationException | RuntimeException e) {
+
+            // Java 8 does not have invokeCleaner, the buffer cleaner is used instead.
+            invokeCleaner = null;
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private DirectBuffers () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Frees the memory of a direct or mapped buffer. The buffer must not be used afterwards.
+     *
+     * @param buffer The buffer to free. Non direct buffers are ignored.
+     */
+    static void free (ByteBuffer buffer) {
+
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+
+        try {
+
+            if (INVOKE_CLEANER != null) {
+
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        }
+
+        catch (final ReflectiveOperationException | RuntimeException e) {
+
+            // The buffer will be freed by the garbage collector instead.
+        }
+    }
+}
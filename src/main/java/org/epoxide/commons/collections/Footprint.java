@@ -0,0 +1,133 @@
+package org.epoxide.commons.collections;
+
+/**
+ * Estimates how much heap memory objects use. Estimates assume a 64 bit JVM with compressed
+ * references, which is the default for heaps under 32GB. Objects have a 12 byte header,
+ * arrays have a 16 byte header, references take 4 bytes, and every object is padded to a
+ * multiple of 8 bytes. The results are estimates and may be off by a few bytes per object on
+ * other JVM configurations, but are good for comparing sizes and finding waste.
+ */
+public final class Footprint {
+
+    /**
+     * The size of an object header.
+     */
+    public static final int OBJECT_HEADER = 12;
+
+    /**
+     * The size of an array header, including the length.
+     */
+    public static final int ARRAY_HEADER = 16;
+
+    /**
+     * The size of a reference.
+     */
+    public static final int REFERENCE = 4;
+
+    /**
+     * The size of a HashMap, not including its table or nodes.
+     */
+    public static final long HASH_MAP = object(6 * 4 + 2 * REFERENCE);
+
+    /**
+     * The size of a single HashMap node, which holds a hash, key, value and next node.
+     */
+    public static final long HASH_MAP_NODE = object(4 + 3 * REFERENCE);
+
+    /**
+     * The size of an ArrayList, not including its array.
+     */
+    public static final long ARRAY_LIST = object(2 * 4 + REFERENCE);
+
+    /**
+     * Whether strings store Latin-1 text using one byte per char. This was added in Java 9.
+     */
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8").startsWith("1.");
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private Footprint () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Estimates the size of an object.
+     *
+     * @param fieldBytes The total size of the fields declared by the object and its super
+     *        classes.
+     * @return The estimated size of the object.
+     */
+    public static long object (long fieldBytes) {
+
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Estimates the size of an array.
+     *
+     * @param length The length of the array.
+     * @param elementBytes The size of each element. Use {@link #REFERENCE} for object arrays.
+     * @return The estimated size of the array.
+     */
+    public static long array (int length, int elementBytes) {
+
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    /**
+     * Estimates the size of a string, including its backing array.
+     *
+     * @param string The string.
+     * @return The estimated size of the string.
+     */
+    public static long string (String string) {
+
+        boolean latin = COMPACT_STRINGS;
+
+        for (int index = 0; latin && index < string.length(); index++) {
+            latin = string.charAt(index) < 256;
+        }
+
+        // Java 9 strings have a hash, a flag for the encoding, and a flag for zero hashes.
+        return object(COMPACT_STRINGS ? REFERENCE + 4 + 2 : REFERENCE + 4) + array(string.length(), latin ? 1 : 2);
+    }
+
+    /**
+     * Estimates the size of a HashMap, not including its keys and values. HashMaps never
+     * shrink, so this assumes the table is the smallest which fits the entries. The real table
+     * may be larger if entries have been removed.
+     *
+     * @param size The amount of entries in the map.
+     * @return The estimated size of the map.
+     */
+    public static long hashMap (int size) {
+
+        return HASH_MAP + (size == 0 ? 0 : array(HashCommon.tableSize(size, 0.75f), REFERENCE)) + size * HASH_MAP_NODE;
+    }
+
+    /**
+     * Estimates the size of an ArrayList, not including its elements.
+     *
+     * @param capacity The length of the backing array.
+     * @return The estimated size of the list.
+     */
+    public static long arrayList (int capacity) {
+
+        return ARRAY_LIST + array(capacity, REFERENCE);
+    }
+
+    /**
+     * Rounds a size up to the next multiple of 8 bytes.
+     *
+     * @param size The size to round.
+     * @return The rounded size.
+     */
+    private static long align (long size) {
+
+        return size + 7 & ~7L;
+    }
+}
@@ -0,0 +1,132 @@
+package org.epoxide.commons.collections;
+
+/**
+ * This singleton class holds code shared by the open addressing hash collections in this
+ * package, such as hash mixing and table sizing.
+ */
+final class HashCommon {
+
+    /**
+     * The default load factor for open addressing tables.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The default amount of expected entries for open addressing tables.
+     */
+    static final int DEFAULT_EXPECTED = 16;
+
+    /**
+     * The largest table size that can be allocated. Tables are always a power of two.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The 32 bit golden ratio, used to spread hash codes over the table.
+     */
+    private static final int INT_PHI = 0x9E3779B9;
+
+    /**
+     * The 64 bit golden ratio, used to spread hash codes over the table.
+     */
+    private static final long LONG_PHI = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private HashCommon () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Scrambles the bits of an int, so that keys which only differ in their upper bits still
+     * end up in different slots of a power of two table.
+     *
+     * @param x The value to mix.
+     * @return The mixed value.
+     */
+    static int mix (int x) {
+
+        final int h = x * INT_PHI;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Scrambles the bits of a long down into an int. See {@link #mix(int)}.
+     *
+     * @param x The value to mix.
+     * @return The mixed value.
+     */
+    static int mix (long x) {
+
+        long h = x * LONG_PHI;
+        h ^= h >>> 32;
+        return (int) (h ^ h >>> 16);
+    }
+
+    /**
+     * Gets the size of the table needed to hold an amount of entries without going over the
+     * load factor.
+     *
+     * @param expected The amount of entries the table should hold.
+     * @param loadFactor The load factor of the table.
+     * @return The smallest power of two table size which can hold the entries.
+     */
+    static int tableSize (int expected, float loadFactor) {
+
+        final long needed = Math.max(2, (long) Math.ceil(expected / loadFactor));
+
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many entries for an open addressing table: " + expected);
+        }
+
+        final int size = Integer.highestOneBit((int) needed);
+        return size == needed ? size : size << 1;
+    }
+
+    /**
+     * Gets the size a full table should grow to.
+     *
+     * @param tableSize The current size of the table.
+     * @return Twice the current size.
+     * @throws IllegalStateException If the table is already at {@link #MAX_CAPACITY}.
+     */
+    static int grow (int tableSize) {
+
+        if (tableSize >= MAX_CAPACITY) {
+            throw new IllegalStateException("Open addressing table can not grow past " + MAX_CAPACITY + " slots");
+        }
+
+        return tableSize * 2;
+    }
+
+    /**
+     * Gets the amount of entries a table can hold before it needs to grow.
+     *
+     * @param tableSize The size of the table.
+     * @param loadFactor The load factor of the table.
+     * @return The maximum amount of entries before the table is resized.
+     */
+    static int maxFill (int tableSize, float loadFactor) {
+
+        return Math.min((int) Math.ceil(tableSize * loadFactor), tableSize - 1);
+    }
+
+    /**
+     * Checks that a load factor is valid for an open addressing table.
+     *
+     * @param loadFactor The load factor to check.
+     * @return The load factor, for convenience.
+     */
+    static float checkLoadFactor (float loadFactor) {
+
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1, got " + loadFactor);
+        }
+
+        return loadFactor;
+    }
+}
@@ -0,0 +1,474 @@
+package org.epoxide.commons.collections;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A map which uses primitive int keys, without boxing them. Entries are stored in flat
+ * arrays using open addressing with linear probing, which avoids the node objects created by
+ * a HashMap. Iterating the map is done using a {@link Cursor}, which does not create any
+ * entry objects.
+ *
+ * The map is not thread safe. Null values are allowed, however {@link #get(int)} will also
+ * return null for missing keys, so use {@link #containsKey(int)} to tell them apart.
+ */
+public class Int2ObjectMap<V> {
+
+    /**
+     * The keys of the table. A key of 0 marks an empty slot, the 0 key itself is stored
+     * separately in {@link #zeroValue}.
+     */
+    private int[] keys;
+
+    /**
+     * The values of the table, in the same slots as their keys.
+     */
+    private Object[] values;
+
+    /**
+     * Whether or not the 0 key is in the map.
+     */
+    private boolean hasZeroKey;
+
+    /**
+     * The value of the 0 key.
+     */
+    private V zeroValue;
+
+    /**
+     * The mask used to wrap slot indexes. Always the table size minus one.
+     */
+    private int mask;
+
+    /**
+     * The amount of entries in the map.
+     */
+    private int size;
+
+    /**
+     * The amount of entries the table can hold before it grows.
+     */
+    private int maxFill;
+
+    /**
+     * The load factor of the table.
+     */
+    private final float loadFactor;
+
+    /**
+     * Constructs a new map with the default expected size and load factor.
+     */
+    public Int2ObjectMap () {
+
+        this(HashCommon.DEFAULT_EXPECTED, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new map which can hold an amount of entries without resizing.
+     *
+     * @param expected The amount of entries expected.
+     */
+    public Int2ObjectMap (int expected) {
+
+        this(expected, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new map which can hold an amount of entries without resizing, using a
+     * custom load factor. Lower load factors use more memory, but have shorter probe chains.
+     *
+     * @param expected The amount of entries expected.
+     * @param loadFactor The load factor of the table. Must be between 0 and 1.
+     */
+    public Int2ObjectMap (int expected, float loadFactor) {
+
+        this.loadFactor = HashCommon.checkLoadFactor(loadFactor);
+        this.allocate(HashCommon.tableSize(expected, loadFactor));
+    }
+
+    /**
+     * Gets the value for a key.
+     *
+     * @param key The key to look up.
+     * @return The value for the key, or null if there is none.
+     */
+    public V get (int key) {
+
+        return this.getOrDefault(key, null);
+    }
+
+    /**
+     * Gets the value for a key, or a default value if the key is not in the map.
+     *
+     * @param key The key to look up.
+     * @param defaultValue The value to return if the key is not in the map.
+     * @return The value for the key, or the default value.
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault (int key, V defaultValue) {
+
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : defaultValue;
+        }
+
+        final int[] keys = this.keys;
+        int slot = HashCommon.mix(key) & this.mask;
+        int current;
+
+        while ((current = keys[slot]) != 0) {
+
+            if (current == key) {
+                return (V) this.values[slot];
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Checks if a key is in the map.
+     *
+     * @param key The key to look for.
+     * @return Whether or not the key is in the map.
+     */
+    public boolean containsKey (int key) {
+
+        return key == 0 ? this.hasZeroKey : this.find(key) >= 0;
+    }
+
+    /**
+     * Puts a value in the map, replacing any existing value for the key.
+     *
+     * @param key The key to use.
+     * @param value The value to put.
+     * @return The previous value for the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put (int key, V value) {
+
+        if (key == 0) {
+
+            final V previous = this.zeroValue;
+            this.zeroValue = value;
+
+            if (!this.hasZeroKey) {
+
+                this.hasZeroKey = true;
+                this.size++;
+            }
+
+            return previous;
+        }
+
+        int slot = HashCommon.mix(key) & this.mask;
+        int current;
+
+        while ((current = this.keys[slot]) != 0) {
+
+            if (current == key) {
+
+                final V previous = (V) this.values[slot];
+                this.values[slot] = value;
+                return previous;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+
+        if (++this.size > this.maxFill) {
+            this.rehash(HashCommon.grow(this.mask + 1));
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the value for a key, creating it with a function if the key is not in the map.
+     *
+     * @param key The key to look up.
+     * @param mapping The function used to create a missing value.
+     * @return The existing or newly created value.
+     */
+    public V computeIfAbsent (int key, IntFunction<? extends V> mapping) {
+
+        if (this.containsKey(key)) {
+            return this.get(key);
+        }
+
+        final V value = mapping.apply(key);
+        this.put(key, value);
+        return value;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return The value which was removed, or null if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove (int key) {
+
+        if (key == 0) {
+
+            if (!this.hasZeroKey) {
+                return null;
+            }
+
+            final V previous = this.zeroValue;
+            this.hasZeroKey = false;
+            this.zeroValue = null;
+            this.size--;
+            return previous;
+        }
+
+        final int slot = this.find(key);
+
+        if (slot < 0) {
+            return null;
+        }
+
+        final V previous = (V) this.values[slot];
+        this.size--;
+        this.shiftKeys(slot);
+        return previous;
+    }
+
+    /**
+     * Gets the amount of entries in the map.
+     *
+     * @return The amount of entries.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Checks if the map is empty.
+     *
+     * @return Whether or not the map has no entries.
+     */
+    public boolean isEmpty () {
+
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all entries from the map. The table keeps its current size.
+     */
+    public void clear () {
+
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.hasZeroKey = false;
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Rebuilds the table at the smallest size which can hold the current entries.
+     */
+    public void trim () {
+
+        final int needed = HashCommon.tableSize(this.size, this.loadFactor);
+
+        if (needed < this.mask + 1) {
+            this.rehash(needed);
+        }
+    }
+
+    /**
+     * Creates a new cursor over the entries of the map. The map must not be modified while
+     * the cursor is in use.
+     *
+     * @return A new cursor positioned before the first entry.
+     */
+    public Cursor cursor () {
+
+        return new Cursor();
+    }
+
+    /**
+     * Finds the slot of a non zero key.
+     *
+     * @param key The key to find.
+     * @return The slot of the key, or -1 if it is not in the table.
+     */
+    private int find (int key) {
+
+        int slot = HashCommon.mix(key) & this.mask;
+        int current;
+
+        while ((current = this.keys[slot]) != 0) {
+
+            if (current == key) {
+                return slot;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Removes the entry in a slot, and shifts the following entries back so that no probe
+     * chain is broken by the gap.
+     *
+     * @param slot The slot to clear.
+     */
+    private void shiftKeys (int slot) {
+
+        final int[] keys = this.keys;
+        int last;
+
+        while (true) {
+
+            last = slot;
+            slot = slot + 1 & this.mask;
+            int current;
+
+            while (true) {
+
+                if ((current = keys[slot]) == 0) {
+
+                    keys[last] = 0;
+                    this.values[last] = null;
+                    return;
+                }
+
+                final int home = HashCommon.mix(current) & this.mask;
+
+                // Stop once an entry is found which may be moved into the gap.
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+
+                slot = slot + 1 & this.mask;
+            }
+
+            keys[last] = current;
+            this.values[last] = this.values[slot];
+        }
+    }
+
+    /**
+     * Creates new empty arrays for the table.
+     *
+     * @param tableSize The size of the table. Must be a power of two.
+     */
+    private void allocate (int tableSize) {
+
+        this.keys = new int[tableSize];
+        this.values = new Object[tableSize];
+        this.mask = tableSize - 1;
+        this.maxFill = HashCommon.maxFill(tableSize, this.loadFactor);
+    }
+
+    /**
+     * Moves all entries into a table of a new size.
+     *
+     * @param tableSize The new size of the table. Must be a power of two.
+     */
+    private void rehash (int tableSize) {
+
+        final int[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.allocate(tableSize);
+
+        for (int index = 0; index < oldKeys.length; index++) {
+
+            final int key = oldKeys[index];
+
+            if (key != 0) {
+
+                int slot = HashCommon.mix(key) & this.mask;
+
+                while (this.keys[slot] != 0) {
+                    slot = slot + 1 & this.mask;
+                }
+
+                this.keys[slot] = key;
+                this.values[slot] = oldValues[index];
+            }
+        }
+    }
+
+    /**
+     * A cursor over the entries of the map. Call {@link #next()} to move to each entry, then
+     * read it using {@link #key()} and {@link #value()}.
+     */
+    public class Cursor {
+
+        /**
+         * The current slot. The slot after the end of the table represents the 0 key.
+         */
+        private int slot = -1;
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return Whether or not there was another entry.
+         */
+        public boolean next () {
+
+            final int[] keys = Int2ObjectMap.this.keys;
+
+            while (++this.slot < keys.length) {
+                if (keys[this.slot] != 0) {
+                    return true;
+                }
+            }
+
+            if (this.slot == keys.length && Int2ObjectMap.this.hasZeroKey) {
+                return true;
+            }
+
+            this.slot = keys.length + 1;
+            return false;
+        }
+
+        /**
+         * Gets the key of the current entry.
+         *
+         * @return The current key.
+         */
+        public int key () {
+
+            return this.slot == Int2ObjectMap.this.keys.length ? 0 : Int2ObjectMap.this.keys[this.slot];
+        }
+
+        /**
+         * Gets the value of the current entry.
+         *
+         * @return The current value.
+         */
+        @SuppressWarnings("unchecked")
+        public V value () {
+
+            return this.slot == Int2ObjectMap.this.keys.length ? Int2ObjectMap.this.zeroValue : (V) Int2ObjectMap.this.values[this.slot];
+        }
+
+        /**
+         * Replaces the value of the current entry.
+         *
+         * @param value The new value.
+         */
+        public void setValue (V value) {
+
+            if (this.slot == Int2ObjectMap.this.keys.length) {
+                Int2ObjectMap.this.zeroValue = value;
+            }
+
+            else {
+                Int2ObjectMap.this.values[this.slot] = value;
+            }
+        }
+    }
+}
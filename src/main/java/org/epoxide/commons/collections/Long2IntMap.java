@@ -0,0 +1,232 @@
+package org.epoxide.commons.collections;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A map of long keys to int values which is stored outside of the Java heap. This is
+ * intended for very large tables, such as tens of millions of ids, which would otherwise cause
+ * long garbage collection pauses. The table can also be backed by a memory mapped file using
+ * {@link #open(Path, int)}, which allows it to survive restarts.
+ *
+ * The memory used by the map is not managed by the garbage collector, so {@link #close()}
+ * should be called once the map is no longer needed. The map is not thread safe. Missing keys
+ * are reported using {@link #getDefaultReturnValue()}, which is 0 unless changed.
+ */
+public class Long2IntMap extends OffHeapLongTable {
+
+    /**
+     * The value returned when a key is not in the map.
+     */
+    private int defaultReturnValue;
+
+    /**
+     * Constructs a new map in memory which can hold an amount of entries without resizing.
+     *
+     * @param expected The amount of entries expected.
+     */
+    public Long2IntMap (int expected) {
+
+        this(expected, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new map in memory which can hold an amount of entries without resizing,
+     * using a custom load factor.
+     *
+     * @param expected The amount of entries expected.
+     * @param loadFactor The load factor of the table. Must be between 0 and 1.
+     */
+    public Long2IntMap (int expected, float loadFactor) {
+
+        super(4, expected, loadFactor);
+    }
+
+    /**
+     * Constructs a new map backed by a file.
+     *
+     * @param file The file to back the map with.
+     * @param expected The amount of entries expected, if a new table is created.
+     * @param loadFactor The load factor of the table.
+     * @throws IOException If the file could not be opened.
+     */
+    private Long2IntMap (Path file, int expected, float loadFactor) throws IOException {
+
+        super(4, expected, loadFactor, file);
+    }
+
+    /**
+     * Opens a map backed by a memory mapped file. If the file already contains a map it will
+     * be loaded, otherwise a new map is created. Changes are written to the file by the
+     * operating system, and {@link #force()} or {@link #close()} can be used to make sure
+     * they have been written.
+     *
+     * @param file The file to back the map with.
+     * @param expected The amount of entries expected, if a new map is created.
+     * @return The opened map.
+     * @throws IOException If the file could not be opened, or does not contain a valid map.
+     */
+    public static Long2IntMap open (Path file, int expected) throws IOException {
+
+        return open(file, expected, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Opens a map backed by a memory mapped file, using a custom load factor. See
+     * {@link #open(Path, int)}.
+     *
+     * @param file The file to back the map with.
+     * @param expected The amount of entries expected, if a new map is created.
+     * @param loadFactor The load factor of the table. Must be between 0 and 1.
+     * @return The opened map.
+     * @throws IOException If the file could not be opened, or does not contain a valid map.
+     */
+    public static Long2IntMap open (Path file, int expected, float loadFactor) throws IOException {
+
+        return new Long2IntMap(file, expected, loadFactor);
+    }
+
+    /**
+     * Gets the value for a key.
+     *
+     * @param key The key to look up.
+     * @return The value for the key, or the default return value if there is none.
+     */
+    public int get (long key) {
+
+        return (int) this.getRaw(key, this.defaultReturnValue);
+    }
+
+    /**
+     * Gets the value for a key, or a specific value if the key is not in the map.
+     *
+     * @param key The key to look up.
+     * @param defaultValue The value to return if the key is not in the map.
+     * @return The value for the key, or the default value.
+     */
+    public int getOrDefault (long key, int defaultValue) {
+
+        return (int) this.getRaw(key, defaultValue);
+    }
+
+    /**
+     * Puts a value in the map, replacing any existing value for the key.
+     *
+     * @param key The key to use.
+     * @param value The value to put.
+     * @return The previous value for the key, or the default return value if there was none.
+     */
+    public int put (long key, int value) {
+
+        return (int) this.putRaw(key, value, this.defaultReturnValue);
+    }
+
+    /**
+     * Adds an amount to the value of a key. If the key is not in the map, the amount is added
+     * to the default return value.
+     *
+     * @param key The key to use.
+     * @param amount The amount to add.
+     * @return The previous value for the key, or the default return value if there was none.
+     */
+    public int addTo (long key, int amount) {
+
+        return (int) this.addRaw(key, amount, this.defaultReturnValue);
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return The value which was removed, or the default return value if the key was not in
+     *         the map.
+     */
+    public int remove (long key) {
+
+        return (int) this.removeRaw(key, this.defaultReturnValue);
+    }
+
+    /**
+     * Gets the value returned when a key is not in the map.
+     *
+     * @return The default return value.
+     */
+    public int getDefaultReturnValue () {
+
+        return this.defaultReturnValue;
+    }
+
+    /**
+     * Sets the value returned when a key is not in the map.
+     *
+     * @param defaultReturnValue The new default return value.
+     * @return The same map instance, provided for quality of life.
+     */
+    public Long2IntMap setDefaultReturnValue (int defaultReturnValue) {
+
+        this.defaultReturnValue = defaultReturnValue;
+        return this;
+    }
+
+    /**
+     * Creates a new cursor over the entries of the map. The map must not be modified while
+     * the cursor is in use.
+     *
+     * @return A new cursor positioned before the first entry.
+     */
+    public Cursor cursor () {
+
+        return new Cursor();
+    }
+
+    /**
+     * A cursor over the entries of the map. Call {@link #next()} to move to each entry, then
+     * read it using {@link #key()} and {@link #value()}.
+     */
+    public class Cursor {
+
+        /**
+         * The current slot. The slot after the end of the table represents the 0 key.
+         */
+        private int slot = -1;
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return Whether or not there was another entry.
+         */
+        public boolean next () {
+
+            final int limit = Long2IntMap.this.cursorLimit();
+
+            while (++this.slot < limit) {
+                if (Long2IntMap.this.isOccupied(this.slot)) {
+                    return true;
+                }
+            }
+
+            this.slot = limit;
+            return false;
+        }
+
+        /**
+         * Gets the key of the current entry.
+         *
+         * @return The current key.
+         */
+        public long key () {
+
+            return Long2IntMap.this.keyAt(this.slot);
+        }
+
+        /**
+         * Gets the value of the current entry.
+         *
+         * @return The current value.
+         */
+        public int value () {
+
+            return (int) Long2IntMap.this.valueAt(this.slot);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package org.epoxide.commons.collections;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive long values, without boxing them. Values are stored in a flat array
+ * using open addressing with linear probing. Iterating the set is done using a
+ * {@link Cursor}, which does not create any objects per value.
+ *
+ * The set is not thread safe.
+ */
+public class LongSet {
+
+    /**
+     * The values of the table. A value of 0 marks an empty slot, the 0 value itself is
+     * tracked separately using {@link #hasZero}.
+     */
+    private long[] keys;
+
+    /**
+     * Whether or not 0 is in the set.
+     */
+    private boolean hasZero;
+
+    /**
+     * The mask used to wrap slot indexes. Always the table size minus one.
+     */
+    private int mask;
+
+    /**
+     * The amount of values in the set.
+     */
+    private int size;
+
+    /**
+     * The amount of values the table can hold before it grows.
+     */
+    private int maxFill;
+
+    /**
+     * The load factor of the table.
+     */
+    private final float loadFactor;
+
+    /**
+     * Constructs a new set with the default expected size and load factor.
+     */
+    public LongSet () {
+
+        this(HashCommon.DEFAULT_EXPECTED, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new set which can hold an amount of values without resizing.
+     *
+     * @param expected The amount of values expected.
+     */
+    public LongSet (int expected) {
+
+        this(expected, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new set which can hold an amount of values without resizing, using a
+     * custom load factor. Lower load factors use more memory, but have shorter probe chains.
+     *
+     * @param expected The amount of values expected.
+     * @param loadFactor The load factor of the table. Must be between 0 and 1.
+     */
+    public LongSet (int expected, float loadFactor) {
+
+        this.loadFactor = HashCommon.checkLoadFactor(loadFactor);
+        this.allocate(HashCommon.tableSize(expected, loadFactor));
+    }
+
+    /**
+     * Checks if a value is in the set.
+     *
+     * @param value The value to look for.
+     * @return Whether or not the value is in the set.
+     */
+    public boolean contains (long value) {
+
+        if (value == 0) {
+            return this.hasZero;
+        }
+
+        final long[] keys = this.keys;
+        int slot = HashCommon.mix(value) & this.mask;
+        long current;
+
+        while ((current = keys[slot]) != 0) {
+
+            if (current == value) {
+                return true;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value The value to add.
+     * @return Whether or not the value was added. False if it was already in the set.
+     */
+    public boolean add (long value) {
+
+        if (value == 0) {
+
+            if (this.hasZero) {
+                return false;
+            }
+
+            this.hasZero = true;
+            this.size++;
+            return true;
+        }
+
+        int slot = HashCommon.mix(value) & this.mask;
+        long current;
+
+        while ((current = this.keys[slot]) != 0) {
+
+            if (current == value) {
+                return false;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        this.keys[slot] = value;
+
+        if (++this.size > this.maxFill) {
+            this.rehash(HashCommon.grow(this.mask + 1));
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value The value to remove.
+     * @return Whether or not the value was removed. False if it was not in the set.
+     */
+    public boolean remove (long value) {
+
+        if (value == 0) {
+
+            if (!this.hasZero) {
+                return false;
+            }
+
+            this.hasZero = false;
+            this.size--;
+            return true;
+        }
+
+        int slot = HashCommon.mix(value) & this.mask;
+        long current;
+
+        while ((current = this.keys[slot]) != 0) {
+
+            if (current == value) {
+
+                this.size--;
+                this.shiftKeys(slot);
+                return true;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the amount of values in the set.
+     *
+     * @return The amount of values.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return Whether or not the set has no values.
+     */
+    public boolean isEmpty () {
+
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all values from the set. The table keeps its current size.
+     */
+    public void clear () {
+
+        Arrays.fill(this.keys, 0);
+        this.hasZero = false;
+        this.size = 0;
+    }
+
+    /**
+     * Rebuilds the table at the smallest size which can hold the current values.
+     */
+    public void trim () {
+
+        final int needed = HashCommon.tableSize(this.size, this.loadFactor);
+
+        if (needed < this.mask + 1) {
+            this.rehash(needed);
+        }
+    }
+
+    /**
+     * Copies the values of the set into a new array. The order of the values is not defined.
+     *
+     * @return An array of all values in the set.
+     */
+    public long[] toArray () {
+
+        final long[] array = new long[this.size];
+        int index = 0;
+
+        for (final long key : this.keys) {
+            if (key != 0) {
+                array[index++] = key;
+            }
+        }
+
+        // If 0 is in the set it is left in the last slot, as new arrays are filled with 0.
+        return array;
+    }
+
+    /**
+     * Creates a new cursor over the values of the set. The set must not be modified while the
+     * cursor is in use.
+     *
+     * @return A new cursor positioned before the first value.
+     */
+    public Cursor cursor () {
+
+        return new Cursor();
+    }
+
+    /**
+     * Removes the value in a slot, and shifts the following values back so that no probe
+     * chain is broken by the gap.
+     *
+     * @param slot The slot to clear.
+     */
+    private void shiftKeys (int slot) {
+
+        final long[] keys = this.keys;
+        int last;
+
+        while (true) {
+
+            last = slot;
+            slot = slot + 1 & this.mask;
+            long current;
+
+            while (true) {
+
+                if ((current = keys[slot]) == 0) {
+
+                    keys[last] = 0;
+                    return;
+                }
+
+                final int home = HashCommon.mix(current) & this.mask;
+
+                // Stop once a value is found which may be moved into the gap.
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+
+                slot = slot + 1 & this.mask;
+            }
+
+            keys[last] = current;
+        }
+    }
+
+    /**
+     * Creates a new empty array for the table.
+     *
+     * @param tableSize The size of the table. Must be a power of two.
+     */
+    private void allocate (int tableSize) {
+
+        this.keys = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.maxFill = HashCommon.maxFill(tableSize, this.loadFactor);
+    }
+
+    /**
+     * Moves all values into a table of a new size.
+     *
+     * @param tableSize The new size of the table. Must be a power of two.
+     */
+    private void rehash (int tableSize) {
+
+        final long[] oldKeys = this.keys;
+        this.allocate(tableSize);
+
+        for (final long key : oldKeys) {
+
+            if (key != 0) {
+
+                int slot = HashCommon.mix(key) & this.mask;
+
+                while (this.keys[slot] != 0) {
+                    slot = slot + 1 & this.mask;
+                }
+
+                this.keys[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * A cursor over the values of the set. Call {@link #next()} to move to each value, then
+     * read it using {@link #get()}.
+     */
+    public class Cursor {
+
+        /**
+         * The current slot. The slot after the end of the table represents the 0 value.
+         */
+        private int slot = -1;
+
+        /**
+         * Moves to the next value.
+         *
+         * @return Whether or not there was another value.
+         */
+        public boolean next () {
+
+            final long[] keys = LongSet.this.keys;
+
+            while (++this.slot < keys.length) {
+                if (keys[this.slot] != 0) {
+                    return true;
+                }
+            }
+
+            if (this.slot == keys.length && LongSet.this.hasZero) {
+                return true;
+            }
+
+            this.slot = keys.length + 1;
+            return false;
+        }
+
+        /**
+         * Gets the current value.
+         *
+         * @return The current value.
+         */
+        public long get () {
+
+            return this.slot == LongSet.this.keys.length ? 0 : LongSet.this.keys[this.slot];
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package org.epoxide.commons.collections;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * A map which uses primitive int values, without boxing them. Entries are stored in flat
+ * arrays using open addressing with linear probing, which avoids the node objects created by
+ * a HashMap. This is useful for things like mapping objects to numeric ids. Iterating the map
+ * is done using a {@link Cursor}, which does not create any entry objects.
+ *
+ * The map is not thread safe, and does not allow null keys. Missing keys are reported using
+ * {@link #getDefaultReturnValue()}, which is 0 unless changed.
+ */
+public class Object2IntMap<K> {
+
+    /**
+     * The keys of the table. A null key marks an empty slot.
+     */
+    private Object[] keys;
+
+    /**
+     * The values of the table, in the same slots as their keys.
+     */
+    private int[] values;
+
+    /**
+     * The mask used to wrap slot indexes. Always the table size minus one.
+     */
+    private int mask;
+
+    /**
+     * The amount of entries in the map.
+     */
+    private int size;
+
+    /**
+     * The amount of entries the table can hold before it grows.
+     */
+    private int maxFill;
+
+    /**
+     * The load factor of the table.
+     */
+    private final float loadFactor;
+
+    /**
+     * The value returned when a key is not in the map.
+     */
+    private int defaultReturnValue;
+
+    /**
+     * Constructs a new map with the default expected size and load factor.
+     */
+    public Object2IntMap () {
+
+        this(HashCommon.DEFAULT_EXPECTED, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new map which can hold an amount of entries without resizing.
+     *
+     * @param expected The amount of entries expected.
+     */
+    public Object2IntMap (int expected) {
+
+        this(expected, HashCommon.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a new map which can hold an amount of entries without resizing, using a
+     * custom load factor. Lower load factors use more memory, but have shorter probe chains.
+     *
+     * @param expected The amount of entries expected.
+     * @param loadFactor The load factor of the table. Must be between 0 and 1.
+     */
+    public Object2IntMap (int expected, float loadFactor) {
+
+        this.loadFactor = HashCommon.checkLoadFactor(loadFactor);
+        this.allocate(HashCommon.tableSize(expected, loadFactor));
+    }
+
+    /**
+     * Gets the value for a key.
+     *
+     * @param key The key to look up.
+     * @return The value for the key, or the default return value if there is none.
+     */
+    public int getInt (Object key) {
+
+        final int slot = this.find(key);
+        return slot < 0 ? this.defaultReturnValue : this.values[slot];
+    }
+
+    /**
+     * Gets the value for a key, or a specific value if the key is not in the map.
+     *
+     * @param key The key to look up.
+     * @param defaultValue The value to return if the key is not in the map.
+     * @return The value for the key, or the default value.
+     */
+    public int getOrDefault (Object key, int defaultValue) {
+
+        final int slot = this.find(key);
+        return slot < 0 ? defaultValue : this.values[slot];
+    }
+
+    /**
+     * Checks if a key is in the map.
+     *
+     * @param key The key to look for.
+     * @return Whether or not the key is in the map.
+     */
+    public boolean containsKey (Object key) {
+
+        return this.find(key) >= 0;
+    }
+
+    /**
+     * Puts a value in the map, replacing any existing value for the key.
+     *
+     * @param key The key to use. Must not be null.
+     * @param value The value to put.
+     * @return The previous value for the key, or the default return value if there was none.
+     */
+    public int put (K key, int value) {
+
+        final int slot = this.insert(key, value);
+
+        if (slot < 0) {
+            return this.defaultReturnValue;
+        }
+
+        final int previous = this.values[slot];
+        this.values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Adds an amount to the value of a key. If the key is not in the map, the amount is added
+     * to the default return value.
+     *
+     * @param key The key to use. Must not be null.
+     * @param amount The amount to add.
+     * @return The previous value for the key, or the default return value if there was none.
+     */
+    public int addTo (K key, int amount) {
+
+        final int slot = this.insert(key, this.defaultReturnValue + amount);
+
+        if (slot < 0) {
+            return this.defaultReturnValue;
+        }
+
+        final int previous = this.values[slot];
+        this.values[slot] += amount;
+        return previous;
+    }
+
+    /**
+     * Gets the value for a key, creating it with a function if the key is not in the map.
+     *
+     * @param key The key to look up. Must not be null.
+     * @param mapping The function used to create a missing value.
+     * @return The existing or newly created value.
+     */
+    public int computeIfAbsent (K key, ToIntFunction<? super K> mapping) {
+
+        final int slot = this.find(key);
+
+        if (slot >= 0) {
+            return this.values[slot];
+        }
+
+        final int value = mapping.applyAsInt(key);
+        this.insert(key, value);
+        return value;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return The value which was removed, or the default return value if the key was not in
+     *         the map.
+     */
+    public int removeInt (Object key) {
+
+        final int slot = this.find(key);
+
+        if (slot < 0) {
+            return this.defaultReturnValue;
+        }
+
+        final int previous = this.values[slot];
+        this.size--;
+        this.shiftKeys(slot);
+        return previous;
+    }
+
+    /**
+     * Gets the value returned when a key is not in the map.
+     *
+     * @return The default return value.
+     */
+    public int getDefaultReturnValue () {
+
+        return this.defaultReturnValue;
+    }
+
+    /**
+     * Sets the value returned when a key is not in the map. A value like -1 is useful for
+     * maps where 0 is a valid value.
+     *
+     * @param defaultReturnValue The new default return value.
+     * @return The same map instance, provided for quality of life.
+     */
+    public Object2IntMap<K> setDefaultReturnValue (int defaultReturnValue) {
+
+        this.defaultReturnValue = defaultReturnValue;
+        return this;
+    }
+
+    /**
+     * Gets the amount of entries in the map.
+     *
+     * @return The amount of entries.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Checks if the map is empty.
+     *
+     * @return Whether or not the map has no entries.
+     */
+    public boolean isEmpty () {
+
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all entries from the map. The table keeps its current size.
+     */
+    public void clear () {
+
+        Arrays.fill(this.keys, null);
+        this.size = 0;
+    }
+
+    /**
+     * Rebuilds the table at the smallest size which can hold the current entries.
+     */
+    public void trim () {
+
+        final int needed = HashCommon.tableSize(this.size, this.loadFactor);
+
+        if (needed < this.mask + 1) {
+            this.rehash(needed);
+        }
+    }
+
+    /**
+     * Estimates the amount of heap memory used by the map, not including the keys. See
+     * {@link Footprint}.
+     *
+     * @return The estimated size of the map in bytes.
+     */
+    public long estimateFootprint () {
+
+        return Footprint.object(2 * Footprint.REFERENCE + 5 * 4) + Footprint.array(this.keys.length, Footprint.REFERENCE) + Footprint.array(this.values.length, 4);
+    }
+
+    /**
+     * Creates a new cursor over the entries of the map. The map must not be modified while
+     * the cursor is in use.
+     *
+     * @return A new cursor positioned before the first entry.
+     */
+    public Cursor cursor () {
+
+        return new Cursor();
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key The key to find.
+     * @return The slot of the key, or -1 if it is not in the table.
+     */
+    private int find (Object key) {
+
+        if (key == null) {
+            return -1;
+        }
+
+        final Object[] keys = this.keys;
+        int slot = HashCommon.mix(key.hashCode()) & this.mask;
+        Object current;
+
+        while ((current = keys[slot]) != null) {
+
+            if (current == key || current.equals(key)) {
+                return slot;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Inserts a key if it is not already in the map.
+     *
+     * @param key The key to insert.
+     * @param value The value to use if the key is inserted.
+     * @return The slot of the existing key, or -1 if the key was inserted.
+     */
+    private int insert (K key, int value) {
+
+        if (key == null) {
+            throw new NullPointerException("Null keys are not supported");
+        }
+
+        int slot = HashCommon.mix(key.hashCode()) & this.mask;
+        Object current;
+
+        while ((current = this.keys[slot]) != null) {
+
+            if (current == key || current.equals(key)) {
+                return slot;
+            }
+
+            slot = slot + 1 & this.mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+
+        if (++this.size > this.maxFill) {
+            this.rehash(HashCommon.grow(this.mask + 1));
+        }
+
+        return -1;
+    }
+
+    /**
+     * Removes the entry in a slot, and shifts the following entries back so that no probe
+     * chain is broken by the gap.
+     *
+     * @param slot The slot to clear.
+     */
+    private void shiftKeys (int slot) {
+
+        final Object[] keys = this.keys;
+        int last;
+
+        while (true) {
+
+            last = slot;
+            slot = slot + 1 & this.mask;
+            Object current;
+
+            while (true) {
+
+                if ((current = keys[slot]) == null) {
+
+                    keys[last] = null;
+                    return;
+                }
+
+                final int home = HashCommon.mix(current.hashCode()) & this.mask;
+
+                // Stop once an entry is found which may be moved into the gap.
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+
+                slot = slot + 1 & this.mask;
+            }
+
+            keys[last] = current;
+            this.values[last] = this.values[slot];
+        }
+    }
+
+    /**
+     * Creates new empty arrays for the table.
+     *
+     * @param tableSize The size of the table. Must be a power of two.
+     */
+    private void allocate (int tableSize) {
+
+        this.keys = new Object[tableSize];
+        this.values = new int[tableSize];
+        this.mask = tableSize - 1;
+        this.maxFill = HashCommon.maxFill(tableSize, this.loadFactor);
+    }
+
+    /**
+     * Moves all entries into a table of a new size.
+     *
+     * @param tableSize The new size of the table. Must be a power of two.
+     */
+    private void rehash (int tableSize) {
+
+        final Object[] oldKeys = this.keys;
+        final int[] oldValues = this.values;
+        this.allocate(tableSize);
+
+        for (int index = 0; index < oldKeys.length; index++) {
+
+            final Object key = oldKeys[index];
+
+            if (key != null) {
+
+                int slot = HashCommon.mix(key.hashCode()) & this.mask;
+
+                while (this.keys[slot] != null) {
+                    slot = slot + 1 & this.mask;
+                }
+
+                this.keys[slot] = key;
+                this.values[slot] = oldValues[index];
+            }
+        }
+    }
+
+    /**
+     * A cursor over the entries of the map. Call {@link #next()} to move to each entry, then
+     * read it using {@link #key()} and {@link #value()}.
+     */
+    public class Cursor {
+
+        /**
+         * The current slot.
+         */
+        private int slot = -1;
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return Whether or not there was another entry.
+         */
+        public boolean next () {
+
+            final Object[] keys = Object2IntMap.this.keys;
+
+            while (++this.slot < keys.length) {
+                if (keys[this.slot] != null) {
+                    return true;
+                }
+            }
+
+            this.slot = keys.length;
+            return false;
+        }
+
+        /**
+         * Gets the key of the current entry.
+         *
+         * @return The current key.
+         */
+        @SuppressWarnings("unchecked")
+        public K key () {
+
+            return (K) Object2IntMap.this.keys[this.slot];
+        }
+
+        /**
+         * Gets the value of the current entry.
+         *
+         * @return The current value.
+         */
+        public int value () {
+
+            return Object2IntMap.this.values[this.slot];
+        }
+
+        /**
+         * Replaces the value of the current entry.
+         *
+         * @param value The new value.
+         */
+        public void setValue (int value) {
+
+            Object2IntMap.this.values[this.slot] = value;
+        }
+    }
+}
@@ -0,0 +1,874 @@
+package org.epoxide.commons.collections;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The shared implementation of the off heap maps with long keys. Keys and values are stored
+ * outside of the Java heap in direct byte buffers, or in buffers mapped from a file. Tables
+ * are split into chunks so they are not limited by the 2GB size of a single buffer. Values
+ * are read and written as longs, and the subclasses narrow them to their value type.
+ *
+ * The table uses open addressing with linear probing, in the same way as the heap based maps
+ * in this package. The 0 key marks an empty slot, and is stored separately.
+ */
+abstract class OffHeapLongTable implements AutoCloseable {
+
+    /**
+     * The magic number at the start of table files.
+     */
+    private static final long MAGIC = 0x45504F584C4E4731L;
+
+    /**
+     * The size of the header of table files, in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * The log2 of the maximum amount of slots in a single chunk.
+     */
+    private static final int MAX_CHUNK_SHIFT = 24;
+
+    /**
+     * The width of each value in bytes. Either 4 or 8.
+     */
+    private final int valueWidth;
+
+    /**
+     * The load factor of the table.
+     */
+    private final float loadFactor;
+
+    /**
+     * The file backing the table, or null if the table is only held in memory.
+     */
+    private final Path file;
+
+    /**
+     * The current storage for the table. Null once the table has been closed.
+     */
+    private Storage storage;
+
+    /**
+     * The amount of entries in the table.
+     */
+    private long size;
+
+    /**
+     * Whether or not the 0 key is in the table.
+     */
+    private boolean hasZeroKey;
+
+    /**
+     * The value of the 0 key.
+     */
+    private long zeroValue;
+
+    /**
+     * The amount of entries the table can hold before it grows.
+     */
+    private int maxFill;
+
+    /**
+     * Constructs a new table in memory.
+     *
+     * @param valueWidth The width of each value in bytes.
+     * @param expected The amount of entries expected.
+     * @param loadFactor The load factor of the table.
+     */
+    OffHeapLongTable (int valueWidth, int expected, float loadFactor) {
+
+        this.valueWidth = valueWidth;
+        this.loadFactor = HashCommon.checkLoadFactor(loadFactor);
+        this.file = null;
+        this.storage = Storage.allocate(valueWidth, HashCommon.tableSize(expected, loadFactor));
+        this.maxFill = HashCommon.maxFill(this.storage.tableSize, loadFactor);
+    }
+
+    /**
+     * Opens a table backed by a file. If the file
+     * already contains a table it will be loaded, otherwise a new table is written to it.
+     *
+     * @param valueWidth The width of each value in bytes.
+     * @param expected The amount of entries expected.
+     * @param loadFactor The load factor of the table.
+     * @param file The file to back the table with.
+     * @throws IOException If the file could not be opened.
+     */
+    OffHeapLongTable (int valueWidth, int expected, float loadFactor, Path file) throws IOException {
+
+        this.valueWidth = valueWidth;
+        this.loadFactor = HashCommon.checkLoadFactor(loadFactor);
+        this.file = file;
+
+        if (Files.exists(file) && Files.size(file) > 0) {
+
+            this.storage = Storage.open(file, valueWidth);
+            this.size = this.storage.header.getLong(16);
+            this.hasZeroKey = this.storage.header.getInt(24) != 0;
+            this.zeroValue = this.storage.header.getLong(32);
+        }
+
+        else {
+
+            this.storage = Storage.create(file, valueWidth, HashCommon.tableSize(expected, loadFactor));
+        }
+
+        this.maxFill = HashCommon.maxFill(this.storage.tableSize, loadFactor);
+    }
+
+    /**
+     * Checks if a key is in the table.
+     *
+     * @param key The key to look for.
+     * @return Whether or not the key is in the table.
+     */
+    public boolean containsKey (long key) {
+
+        return key == 0 ? this.hasZeroKey : this.find(key) >= 0;
+    }
+
+    /**
+     * Gets the amount of entries in the table.
+     *
+     * @return The amount of entries.
+     */
+    public long size () {
+
+        return this.size;
+    }
+
+    /**
+     * Checks if the table is empty.
+     *
+     * @return Whether or not the table has no entries.
+     */
+    public boolean isEmpty () {
+
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the file backing the table.
+     *
+     * @return The backing file, or null if the table is only held in memory.
+     */
+    public Path getFile () {
+
+        return this.file;
+    }
+
+    /**
+     * Gets the amount of off heap memory used by the table, in bytes.
+     *
+     * @return The size of the table in bytes.
+     */
+    public long getMemoryUsage () {
+
+        return (long) this.storage().tableSize * (8 + this.valueWidth);
+    }
+
+    /**
+     * Removes all entries from the table. The table keeps its current size.
+     */
+    public void clear () {
+
+        final Storage storage = this.storage();
+
+        for (final ByteBuffer chunk : storage.keys) {
+
+            for (int index = 0; index < chunk.capacity(); index += 8) {
+                chunk.putLong(index, 0);
+            }
+        }
+
+        this.size = 0;
+        this.hasZeroKey = false;
+        this.zeroValue = 0;
+        this.writeHeader();
+    }
+
+    /**
+     * Writes any changes to a file backed table out to the file. Does nothing for tables held
+     * in memory.
+     */
+    public void force () {
+
+        final Storage storage = this.storage();
+
+        if (storage.header != null) {
+
+            storage.force();
+        }
+    }
+
+    /**
+     * Frees the memory used by the table. File backed tables are written out to their file
+     * first. The table can not be used once closed.
+     */
+    @Override
+    public void close () {
+
+        if (this.storage != null) {
+
+            if (this.storage.header != null) {
+                this.storage.force();
+            }
+
+            this.storage.free();
+            this.storage = null;
+        }
+    }
+
+    /**
+     * Gets the raw value for a key.
+     *
+     * @param key The key to look up.
+     * @param defaultValue The value to return if the key is not in the table.
+     * @return The value for the key, or the default value.
+     */
+    long getRaw (long key, long defaultValue) {
+
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : defaultValue;
+        }
+
+        final int slot = this.find(key);
+        return slot < 0 ? defaultValue : this.storage().getValue(slot);
+    }
+
+    /**
+     * Puts a raw value in the table.
+     *
+     * @param key The key to use.
+     * @param value The value to put.
+     * @param defaultValue The value to return if the key was not in the table.
+     * @return The previous value for the key, or the default value.
+     */
+    long putRaw (long key, long value, long defaultValue) {
+
+        if (key == 0) {
+
+            final long previous = this.hasZeroKey ? this.zeroValue : defaultValue;
+
+            if (!this.hasZeroKey) {
+
+                this.hasZeroKey = true;
+                this.size++;
+            }
+
+            this.zeroValue = value;
+            this.writeHeader();
+            return previous;
+        }
+
+        final Storage storage = this.storage();
+        final int mask = storage.tableSize - 1;
+        int slot = HashCommon.mix(key) & mask;
+        long current;
+
+        while ((current = storage.getKey(slot)) != 0) {
+
+            if (current == key) {
+
+                final long previous = storage.getValue(slot);
+                storage.setValue(slot, value);
+                return previous;
+            }
+
+            slot = slot + 1 & mask;
+        }
+
+        storage.setKey(slot, key);
+        storage.setValue(slot, value);
+        this.size++;
+
+        if (this.size - (this.hasZeroKey ? 1 : 0) > this.maxFill) {
+            this.grow();
+        }
+
+        this.writeHeader();
+        return defaultValue;
+    }
+
+    /**
+     * Adds an amount to a raw value in the table.
+     *
+     * @param key The key to use.
+     * @param amount The amount to add.
+     * @param defaultValue The value to add to if the key was not in the table.
+     * @return The previous value for the key, or the default value.
+     */
+    long addRaw (long key, long amount, long defaultValue) {
+
+        final int slot = key == 0 ? -1 : this.find(key);
+
+        if (slot >= 0) {
+
+            final Storage storage = this.storage();
+            final long previous = storage.getValue(slot);
+            storage.setValue(slot, previous + amount);
+            return previous;
+        }
+
+        final long previous = this.getRaw(key, defaultValue);
+        this.putRaw(key, previous + amount, defaultValue);
+        return previous;
+    }
+
+    /**
+     * Removes a key from the table.
+     *
+     * @param key The key to remove.
+     * @param defaultValue The value to return if the key was not in the table.
+     * @return The raw value which was removed, or the default value.
+     */
+    long removeRaw (long key, long defaultValue) {
+
+        if (key == 0) {
+
+            if (!this.hasZeroKey) {
+                return defaultValue;
+            }
+
+            this.hasZeroKey = false;
+            this.size--;
+            this.writeHeader();
+            return this.zeroValue;
+        }
+
+        final int slot = this.find(key);
+
+        if (slot < 0) {
+            return defaultValue;
+        }
+
+        final long previous = this.storage().getValue(slot);
+        this.shiftKeys(slot);
+        this.size--;
+        this.writeHeader();
+        return previous;
+    }
+
+    /**
+     * Gets the size of the table, including the slot used for the 0 key by cursors.
+     *
+     * @return The amount of slots a cursor can visit.
+     */
+    int cursorLimit () {
+
+        return this.storage().tableSize + 1;
+    }
+
+    /**
+     * Checks if a cursor slot holds an entry.
+     *
+     * @param slot The slot to check. The last slot represents the 0 key.
+     * @return Whether or not the slot holds an entry.
+     */
+    boolean isOccupied (int slot) {
+
+        final Storage storage = this.storage();
+        return slot == storage.tableSize ? this.hasZeroKey : storage.getKey(slot) != 0;
+    }
+
+    /**
+     * Gets the key in a cursor slot.
+     *
+     * @param slot The slot to read.
+     * @return The key in the slot.
+     */
+    long keyAt (int slot) {
+
+        final Storage storage = this.storage();
+        return slot == storage.tableSize ? 0 : storage.getKey(slot);
+    }
+
+    /**
+     * Gets the raw value in a cursor slot.
+     *
+     * @param slot The slot to read.
+     * @return The value in the slot.
+     */
+    long valueAt (int slot) {
+
+        final Storage storage = this.storage();
+        return slot == storage.tableSize ? this.zeroValue : storage.getValue(slot);
+    }
+
+    /**
+     * Finds the slot of a non zero key.
+     *
+     * @param key The key to find.
+     * @return The slot of the key, or -1 if it is not in the table.
+     */
+    private int find (long key) {
+
+        final Storage storage = this.storage();
+        final int mask = storage.tableSize - 1;
+        int slot = HashCommon.mix(key) & mask;
+        long current;
+
+        while ((current = storage.getKey(slot)) != 0) {
+
+            if (current == key) {
+                return slot;
+            }
+
+            slot = slot + 1 & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Removes the entry in a slot, and shifts the following entries back so that no probe
+     * chain is broken by the gap.
+     *
+     * @param slot The slot to clear.
+     */
+    private void shiftKeys (int slot) {
+
+        final Storage storage = this.storage();
+        final int mask = storage.tableSize - 1;
+        int last;
+
+        while (true) {
+
+            last = slot;
+            slot = slot + 1 & mask;
+            long current;
+
+            while (true) {
+
+                if ((current = storage.getKey(slot)) == 0) {
+
+                    storage.setKey(last, 0);
+                    return;
+                }
+
+                final int home = HashCommon.mix(current) & mask;
+
+                // Stop once an entry is found which may be moved into the gap.
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+
+                slot = slot + 1 & mask;
+            }
+
+            storage.setKey(last, current);
+            storage.setValue(last, storage.getValue(slot));
+        }
+    }
+
+    /**
+     * Moves all entries into a table of twice the size. File backed tables are rebuilt in a
+     * temporary file, which then replaces the original file, see
+     * {@link #replaceFile(Storage, Path)}. The old storage is only freed once the new storage
+     * has been built, so the table is still usable if this fails.
+     *
+     * @throws IllegalStateException If the table is already at its maximum size.
+     */
+    private void grow () {
+
+        final Storage old = this.storage();
+
+        if (old.tableSize >= HashCommon.MAX_CAPACITY) {
+            throw new IllegalStateException("Off heap table can not grow past " + HashCommon.MAX_CAPACITY + " slots");
+        }
+
+        final int tableSize = old.tableSize * 2;
+        final Path target = this.file == null ? null : this.file.resolveSibling(this.file.getFileName() + ".resize");
+        Storage resized = null;
+
+        try {
+
+            resized = target == null ? Storage.allocate(this.valueWidth, tableSize) : Storage.create(target, this.valueWidth, tableSize);
+            final int mask = tableSize - 1;
+
+            for (int index = 0; index < old.tableSize; index++) {
+
+                final long key = old.getKey(index);
+
+                if (key != 0) {
+
+                    int slot = HashCommon.mix(key) & mask;
+
+                    while (resized.getKey(slot) != 0) {
+                        slot = slot + 1 & mask;
+                    }
+
+                    resized.setKey(slot, key);
+                    resized.setValue(slot, old.getValue(index));
+                }
+            }
+
+            if (target != null) {
+
+                resized.force();
+                resized.free();
+                resized = null;
+                this.replaceFile(old, target);
+            }
+
+            else {
+
+                this.storage = resized;
+                old.free();
+            }
+
+            this.maxFill = HashCommon.maxFill(tableSize, this.loadFactor);
+        }
+
+        catch (final IOException e) {
+
+            if (resized != null) {
+                resized.free();
+            }
+
+            throw new UncheckedIOException("Could not resize off heap table " + this.file, e);
+        }
+    }
+
+    /**
+     * Replaces the backing file with a resized file. Some platforms such as Windows will not
+     * replace a file which is still mapped, so the old storage is written out and unmapped
+     * first. If the file can not be replaced, the original file is mapped again so the table
+     * is still usable.
+     *
+     * @param old The current storage, mapped from the backing file.
+     * @param resized The file holding the resized table.
+     * @throws IOException If the file could not be replaced.
+     */
+    private void replaceFile (Storage old, Path resized) throws IOException {
+
+        old.force();
+        old.free();
+        this.storage = null;
+
+        try {
+
+            Files.move(resized, this.file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        catch (final IOException e) {
+
+            try {
+
+                this.storage = Storage.open(this.file, this.valueWidth);
+            }
+
+            catch (final IOException e2) {
+
+                e.addSuppressed(e2);
+            }
+
+            try {
+
+                Files.deleteIfExists(resized);
+            }
+
+            catch (final IOException e2) {
+
+                e.addSuppressed(e2);
+            }
+
+            throw e;
+        }
+
+        this.storage = Storage.open(this.file, this.valueWidth);
+    }
+
+    /**
+     * Writes the size and 0 key of the table to the file header, if there is one.
+     */
+    private void writeHeader () {
+
+        final ByteBuffer header = this.storage().header;
+
+        if (header != null) {
+
+            header.putLong(16, this.size);
+            header.putInt(24, this.hasZeroKey ? 1 : 0);
+            header.putFloat(28, this.loadFactor);
+            header.putLong(32, this.zeroValue);
+        }
+    }
+
+    /**
+     * Gets the current storage, making sure the table has not been closed.
+     *
+     * @return The current storage.
+     */
+    private Storage storage () {
+
+        if (this.storage == null) {
+            throw new IllegalStateException("The off heap table has been closed");
+        }
+
+        return this.storage;
+    }
+
+    /**
+     * The chunked buffers which hold the keys and values of a table.
+     */
+    private static final class Storage {
+
+        /**
+         * The amount of slots in the table.
+         */
+        final int tableSize;
+
+        /**
+         * The log2 of the amount of slots in each chunk.
+         */
+        final int chunkShift;
+
+        /**
+         * The mask used to get the slot within a chunk.
+         */
+        final int chunkMask;
+
+        /**
+         * The width of each value in bytes.
+         */
+        final int valueWidth;
+
+        /**
+         * The chunks which hold the keys.
+         */
+        final ByteBuffer[] keys;
+
+        /**
+         * The chunks which hold the values.
+         */
+        final ByteBuffer[] values;
+
+        /**
+         * The mapped file header, or null if the storage is only held in memory.
+         */
+        final ByteBuffer header;
+
+        /**
+         * Constructs new storage from existing buffers.
+         *
+         * @param tableSize The amount of slots in the table.
+         * @param valueWidth The width of each value in bytes.
+         * @param keys The chunks which hold the keys.
+         * @param values The chunks which hold the values.
+         * @param header The mapped file header. Can be null.
+         */
+        private Storage (int tableSize, int valueWidth, ByteBuffer[] keys, ByteBuffer[] values, ByteBuffer header) {
+
+            this.tableSize = tableSize;
+            this.chunkShift = Math.min(Integer.numberOfTrailingZeros(tableSize), MAX_CHUNK_SHIFT);
+            this.chunkMask = (1 << this.chunkShift) - 1;
+            this.valueWidth = valueWidth;
+            this.keys = keys;
+            this.values = values;
+            this.header = header;
+        }
+
+        /**
+         * Allocates new empty storage in direct memory.
+         *
+         * @param valueWidth The width of each value in bytes.
+         * @param tableSize The amount of slots in the table.
+         * @return The new storage.
+         */
+        static Storage allocate (int valueWidth, int tableSize) {
+
+            final int chunkSlots = 1 << Math.min(Integer.numberOfTrailingZeros(tableSize), MAX_CHUNK_SHIFT);
+            final int chunks = tableSize / chunkSlots;
+            final ByteBuffer[] keys = new ByteBuffer[chunks];
+            final ByteBuffer[] values = new ByteBuffer[chunks];
+
+            for (int index = 0; index < chunks; index++) {
+
+                keys[index] = ByteBuffer.allocateDirect(chunkSlots * 8).order(ByteOrder.nativeOrder());
+                values[index] = ByteBuffer.allocateDirect(chunkSlots * valueWidth).order(ByteOrder.nativeOrder());
+            }
+
+            return new Storage(tableSize, valueWidth, keys, values, null);
+        }
+
+        /**
+         * Creates new empty storage mapped from a file. Any existing file is replaced.
+         *
+         * @param file The file to map the storage from.
+         * @param valueWidth The width of each value in bytes.
+         * @param tableSize The amount of slots in the table.
+         * @return The new storage.
+         * @throws IOException If the file could not be created.
+         */
+        static Storage create (Path file, int valueWidth, int tableSize) throws IOException {
+
+            Files.deleteIfExists(file);
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                final Storage storage = map(channel, valueWidth, tableSize);
+                storage.header.putLong(0, MAGIC);
+                storage.header.putInt(8, valueWidth);
+                storage.header.putInt(12, tableSize);
+                return storage;
+            }
+        }
+
+        /**
+         * Opens storage which was previously written to a file.
+         *
+         * @param file The file to open.
+         * @param valueWidth The expected width of each value in bytes.
+         * @return The storage mapped from the file.
+         * @throws IOException If the file could not be read, or does not hold a valid table.
+         */
+        static Storage open (Path file, int valueWidth) throws IOException {
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                    // Keep reading until the full header is loaded.
+                }
+
+                final int tableSize = header.getInt(12);
+
+                if (header.getLong(0) != MAGIC || header.getInt(8) != valueWidth || Integer.bitCount(tableSize) != 1) {
+                    throw new IOException("The file " + file + " does not contain a valid off heap table");
+                }
+
+                return map(channel, valueWidth, tableSize);
+            }
+        }
+
+        /**
+         * Maps the header and chunks of a table file into memory. The file is grown to fit the
+         * table if needed.
+         *
+         * @param channel The channel of the file.
+         * @param valueWidth The width of each value in bytes.
+         * @param tableSize The amount of slots in the table.
+         * @return The mapped storage.
+         * @throws IOException If the file could not be mapped.
+         */
+        private static Storage map (FileChannel channel, int valueWidth, int tableSize) throws IOException {
+
+            final int chunkSlots = 1 << Math.min(Integer.numberOfTrailingZeros(tableSize), MAX_CHUNK_SHIFT);
+            final int chunks = tableSize / chunkSlots;
+            final long valueOffset = HEADER_SIZE + (long) tableSize * 8;
+            final ByteBuffer[] keys = new ByteBuffer[chunks];
+            final ByteBuffer[] values = new ByteBuffer[chunks];
+            final ByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int index = 0; index < chunks; index++) {
+
+                keys[index] = channel.map(MapMode.READ_WRITE, HEADER_SIZE + (long) index * chunkSlots * 8, chunkSlots * 8L).order(ByteOrder.LITTLE_ENDIAN);
+                values[index] = channel.map(MapMode.READ_WRITE, valueOffset + (long) index * chunkSlots * valueWidth, (long) chunkSlots * valueWidth).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new Storage(tableSize, valueWidth, keys, values, header);
+        }
+
+        /**
+         * Reads the key in a slot.
+         *
+         * @param slot The slot to read.
+         * @return The key in the slot.
+         */
+        long getKey (int slot) {
+
+            return this.keys[slot >>> this.chunkShift].getLong((slot & this.chunkMask) << 3);
+        }
+
+        /**
+         * Writes the key in a slot.
+         *
+         * @param slot The slot to write.
+         * @param key The key to write.
+         */
+        void setKey (int slot, long key) {
+
+            this.keys[slot >>> this.chunkShift].putLong((slot & this.chunkMask) << 3, key);
+        }
+
+        /**
+         * Reads the value in a slot.
+         *
+         * @param slot The slot to read.
+         * @return The value in the slot.
+         */
+        long getValue (int slot) {
+
+            final ByteBuffer chunk = this.values[slot >>> this.chunkShift];
+            final int index = (slot & this.chunkMask) * this.valueWidth;
+            return this.valueWidth == 8 ? chunk.getLong(index) : chunk.getInt(index);
+        }
+
+        /**
+         * Writes the value in a slot.
+         *
+         * @param slot The slot to write.
+         * @param value The value to write.
+         */
+        void setValue (int slot, long value) {
+
+            final ByteBuffer chunk = this.values[slot >>> this.chunkShift];
+            final int index = (slot & this.chunkMask) * this.valueWidth;
+
+            if (this.valueWidth == 8) {
+                chunk.putLong(index, value);
+            }
+
+            else {
+                chunk.putInt(index, (int) value);
+            }
+        }
+
+        /**
+         * Writes any changes to mapped buffers out to the file.
+         */
+        void force () {
+
+            if (this.header instanceof MappedByteBuffer) {
+
+                ((MappedByteBuffer) this.header).force();
+
+                for (final ByteBuffer chunk : this.keys) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+
+                for (final ByteBuffer chunk : this.values) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+            }
+        }
+
+        /**
+         * Frees all of the buffers used by the storage.
+         */
+        void free () {
+
+            DirectBuffers.free(this.header);
+
+            for (final ByteBuffer chunk : this.keys) {
+                DirectBuffers.free(chunk);
+            }
+
+            for (final ByteBuffer chunk : this.values) {
+                DirectBuffers.free(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.epoxide.commons.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A log handler which moves publishing off of the logging thread. Records are placed in a
+ * bounded queue and passed to the delegate handlers by a daemon thread, so slow handlers such
+ * as file or console output do not block the caller. If the queue is full new records are
+ * dropped rather than blocking, and the amount of dropped records is reported once there is
+ * room again.
+ *
+ * The source class and method of a record are not inferred by default, as inferring them
+ * requires walking the stack on the logging thread. This can be enabled using
+ * {@link #setInferCaller(boolean)}.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The handlers which records are passed to.
+     */
+    private final Handler[] delegates;
+
+    /**
+     * The queue of records waiting to be published.
+     */
+    private final BlockingQueue<LogRecord> queue;
+
+    /**
+     * The amount of records dropped because the queue was full.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The amount of records which have been passed to the queue, including dropped ones.
+     */
+    private final AtomicLong queued = new AtomicLong();
+
+    /**
+     * The amount of records which the worker has finished passing to the delegates, or which
+     * were dropped. This is used by {@link #flush()}, as an empty queue only means the worker
+     * has taken the last record, not that it has been published.
+     */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * The thread which publishes records to the delegates.
+     */
+    private final Thread worker;
+
+    /**
+     * Whether or not the source of a record should be inferred before it is queued.
+     */
+    private volatile boolean inferCaller;
+
+    /**
+     * Whether or not the handler has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new asynchronous handler.
+     *
+     * @param capacity The maximum amount of records which can be waiting at once.
+     * @param delegates The handlers to pass records to.
+     */
+    public AsyncLogHandler (int capacity, Handler... delegates) {
+
+        this.delegates = delegates.clone();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::run, "Epoxide Async Logger");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Moves all of the handlers used by a logger behind a new asynchronous handler. If the
+     * logger has no handlers of its own, the handlers of the closest parent with handlers are
+     * used instead, and the logger will no longer use its parent handlers.
+     *
+     * @param logger The logger to make asynchronous.
+     * @param capacity The maximum amount of records which can be waiting at once.
+     * @return The handler which was installed.
+     */
+    public static AsyncLogHandler install (Logger logger, int capacity) {
+
+        final List<Handler> handlers = new ArrayList<>();
+
+        for (final Handler handler : logger.getHandlers()) {
+
+            handlers.add(handler);
+            logger.removeHandler(handler);
+        }
+
+        Logger parent = logger.getParent();
+
+        while (handlers.isEmpty() && logger.getUseParentHandlers() && parent != null) {
+
+            for (final Handler handler : parent.getHandlers()) {
+                handlers.add(handler);
+            }
+
+            if (!parent.getUseParentHandlers()) {
+                break;
+            }
+
+            parent = parent.getParent();
+        }
+
+        final AsyncLogHandler async = new AsyncLogHandler(capacity, handlers.toArray(new Handler[handlers.size()]));
+        logger.setUseParentHandlers(false);
+        logger.addHandler(async);
+        return async;
+    }
+
+    @Override
+    public void publish (LogRecord record) {
+
+        if (this.closed || !this.isLoggable(record)) {
+            return;
+        }
+
+        if (this.inferCaller) {
+
+            record.getSourceClassName();
+        }
+
+        else {
+
+            record.setSourceClassName(null);
+            record.setSourceMethodName(null);
+        }
+
+        // Counted before the offer, so a flush never waits on fewer records than were queued.
+        this.queued.incrementAndGet();
+
+        if (!this.queue.offer(record)) {
+
+            this.dropped.incrementAndGet();
+            this.completed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void flush () {
+
+        final long target = this.queued.get();
+
+        while (this.completed.get() < target && this.worker.isAlive()) {
+            Thread.yield();
+        }
+
+        for (final Handler handler : this.delegates) {
+            handler.flush();
+        }
+    }
+
+    @Override
+    public void close () {
+
+        this.closed = true;
+        this.worker.interrupt();
+
+        try {
+
+            this.worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        catch (final InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        for (final Handler handler : this.delegates) {
+            handler.close();
+        }
+    }
+
+    /**
+     * Sets whether or not the source class and method of records should be inferred before
+     * they are queued. This walks the stack of the logging thread, so it is disabled by
+     * default.
+     *
+     * @param inferCaller Whether or not to infer the source of records.
+     * @return The same handler instance, provided for quality of life.
+     */
+    public AsyncLogHandler setInferCaller (boolean inferCaller) {
+
+        this.inferCaller = inferCaller;
+        return this;
+    }
+
+    /**
+     * Gets the amount of records which were dropped because the queue was full.
+     *
+     * @return The amount of dropped records.
+     */
+    public long getDroppedCount () {
+
+        return this.dropped.get();
+    }
+
+    /**
+     * The loop run by the worker thread. Publishes queued records until the handler is
+     * closed, and then publishes whatever is left.
+     */
+    private void run () {
+
+        long reported = 0;
+
+        while (!this.closed || !this.queue.isEmpty()) {
+
+            final LogRecord record;
+
+            try {
+
+                record = this.closed ? this.queue.poll() : this.queue.take();
+            }
+
+            catch (final InterruptedException e) {
+
+                continue;
+            }
+
+            if (record == null) {
+                break;
+            }
+
+            final long dropped = this.dropped.get();
+
+            if (dropped != reported) {
+
+                final LogRecord notice = new LogRecord(Level.WARNING, "The async logger dropped " + (dropped - reported) + " records because its queue was full");
+                notice.setLoggerName(record.getLoggerName());
+                this.deliver(notice);
+                reported = dropped;
+            }
+
+            this.deliver(record);
+            this.completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Passes a record to all of the delegate handlers.
+     *
+     * @param record The record to pass.
+     */
+    private void deliver (LogRecord record) {
+
+        for (final Handler handler : this.delegates) {
+
+            try {
+
+                handler.publish(record);
+            }
+
+            catch (final RuntimeException e) {
+
+                this.reportError("Delegate handler failed", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
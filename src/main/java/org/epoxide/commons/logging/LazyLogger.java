@@ -0,0 +1,237 @@
+package org.epoxide.commons.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A wrapper for {@link Logger} which only builds messages when they will actually be logged.
+ * Messages are passed as suppliers, and the level of the logger is checked before the
+ * supplier is called. Repeated messages can also be rate limited using a key, so a warning
+ * which happens every tick does not flood the log.
+ */
+public class LazyLogger {
+
+    /**
+     * The maximum amount of keys tracked for rate limited messages. Once exceeded the tracked
+     * keys are forgotten, to keep the memory used by the logger bounded.
+     */
+    private static final int MAX_LIMITED_KEYS = 1024;
+
+    /**
+     * The logger being wrapped.
+     */
+    private final Logger logger;
+
+    /**
+     * The rate limit state for each key which has been logged.
+     */
+    private final Map<Object, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * The minimum time in nanoseconds between two messages with the same key.
+     */
+    private volatile long limitInterval = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * Constructs a new lazy logger.
+     *
+     * @param logger The logger to wrap.
+     */
+    public LazyLogger (Logger logger) {
+
+        this.logger = logger;
+    }
+
+    /**
+     * Gets the logger being wrapped.
+     *
+     * @return The wrapped logger.
+     */
+    public Logger getLogger () {
+
+        return this.logger;
+    }
+
+    /**
+     * Checks if a message at the passed level would be logged.
+     *
+     * @param level The level to check.
+     * @return Whether or not messages at the level will be logged.
+     */
+    public boolean isLoggable (Level level) {
+
+        return this.logger.isLoggable(level);
+    }
+
+    /**
+     * Logs a message. The message is only built if the level is loggable.
+     *
+     * @param level The level of the message.
+     * @param message A supplier for the message.
+     */
+    public void log (Level level, Supplier<String> message) {
+
+        if (this.logger.isLoggable(level)) {
+            this.logger.log(level, message.get());
+        }
+    }
+
+    /**
+     * Logs a message along with a throwable. The message is only built if the level is
+     * loggable.
+     *
+     * @param level The level of the message.
+     * @param message A supplier for the message.
+     * @param thrown The throwable to log with the message. Can be null.
+     */
+    public void log (Level level, Supplier<String> message, Throwable thrown) {
+
+        if (this.logger.isLoggable(level)) {
+            this.logger.log(level, message.get(), thrown);
+        }
+    }
+
+    /**
+     * Logs a message, unless a message with the same key was logged recently. Once the limit
+     * interval has passed, the next message with the key will be logged along with the
+     * amount of messages which were suppressed.
+     *
+     * @param level The level of the message.
+     * @param key The key used to identify repeated messages. Must have a working equals and
+     *        hashCode.
+     * @param message A supplier for the message.
+     * @param thrown The throwable to log with the message. Can be null.
+     */
+    public void logLimited (Level level, Object key, Supplier<String> message, Throwable thrown) {
+
+        if (!this.logger.isLoggable(level)) {
+            return;
+        }
+
+        if (this.limits.size() > MAX_LIMITED_KEYS) {
+            this.limits.clear();
+        }
+
+        final int suppressed = this.limits.computeIfAbsent(key, k -> new Limit()).tryAcquire(System.nanoTime(), this.limitInterval);
+
+        if (suppressed >= 0) {
+            this.logger.log(level, suppressed == 0 ? message.get() : message.get() + " (" + suppressed + " similar messages were suppressed)", thrown);
+        }
+    }
+
+    /**
+     * Logs a warning message. The message is only built if warnings are loggable.
+     *
+     * @param message A supplier for the message.
+     */
+    public void warning (Supplier<String> message) {
+
+        this.log(Level.WARNING, message);
+    }
+
+    /**
+     * Logs a warning message along with a throwable. The message is only built if warnings
+     * are loggable.
+     *
+     * @param message A supplier for the message.
+     * @param thrown The throwable to log with the message. Can be null.
+     */
+    public void warning (Supplier<String> message, Throwable thrown) {
+
+        this.log(Level.WARNING, message, thrown);
+    }
+
+    /**
+     * Logs a warning message, unless a warning with the same key was logged recently. See
+     * {@link #logLimited(Level, Object, Supplier, Throwable)}.
+     *
+     * @param key The key used to identify repeated messages.
+     * @param message A supplier for the message.
+     * @param thrown The throwable to log with the message. Can be null.
+     */
+    public void warningLimited (Object key, Supplier<String> message, Throwable thrown) {
+
+        this.logLimited(Level.WARNING, key, message, thrown);
+    }
+
+    /**
+     * Logs an info message. The message is only built if info messages are loggable.
+     *
+     * @param message A supplier for the message.
+     */
+    public void info (Supplier<String> message) {
+
+        this.log(Level.INFO, message);
+    }
+
+    /**
+     * Logs a fine message. The message is only built if fine messages are loggable.
+     *
+     * @param message A supplier for the message.
+     */
+    public void fine (Supplier<String> message) {
+
+        this.log(Level.FINE, message);
+    }
+
+    /**
+     * Sets the minimum time between two rate limited messages with the same key.
+     *
+     * @param interval The minimum time between messages.
+     * @param unit The unit of the interval.
+     * @return The same logger instance, provided for quality of life.
+     */
+    public LazyLogger setLimitInterval (long interval, TimeUnit unit) {
+
+        this.limitInterval = unit.toNanos(interval);
+        return this;
+    }
+
+    /**
+     * The rate limit state for a single key.
+     */
+    private static class Limit {
+
+        /**
+         * The time the key was last logged. Only valid once {@link #logged} is true.
+         */
+        private long lastLogged;
+
+        /**
+         * Whether or not the key has been logged yet.
+         */
+        private boolean logged;
+
+        /**
+         * The amount of messages suppressed since the key was last logged.
+         */
+        private int suppressed;
+
+        /**
+         * Attempts to log a message for the key.
+         *
+         * @param now The current time in nanoseconds.
+         * @param interval The minimum time between two messages.
+         * @return The amount of messages suppressed since the last one if the message should
+         *         be logged, or -1 if it should be suppressed.
+         */
+        synchronized int tryAcquire (long now, long interval) {
+
+            if (this.logged && now - this.lastLogged < interval) {
+
+                this.suppressed++;
+                return -1;
+            }
+
+            final int count = this.suppressed;
+            this.logged = true;
+            this.lastLogged = now;
+            this.suppressed = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.epoxide.commons.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter which can be incremented from many threads at once. Updates are striped across
+ * cells using a {@link LongAdder}, so heavily contended counters do not slow each other down.
+ */
+public final class Counter {
+
+    /**
+     * The striped adder which holds the count.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment () {
+
+        this.count.increment();
+    }
+
+    /**
+     * Adds an arbitrary amount to the counter.
+     *
+     * @param amount The amount to add.
+     */
+    public void add (long amount) {
+
+        this.count.add(amount);
+    }
+
+    /**
+     * Gets the current count. This is not an atomic snapshot if other threads are updating
+     * the counter at the same time.
+     *
+     * @return The current count.
+     */
+    public long getCount () {
+
+        return this.count.sum();
+    }
+
+    /**
+     * Resets the counter to zero.
+     */
+    public void reset () {
+
+        this.count.reset();
+    }
+}
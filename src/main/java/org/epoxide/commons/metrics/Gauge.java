@@ -0,0 +1,16 @@
+package org.epoxide.commons.metrics;
+
+/**
+ * A metric which reads its value on demand, such as the size of a collection. Gauges are
+ * only read when a snapshot of the registry is taken.
+ */
+@FunctionalInterface
+public interface Gauge {
+
+    /**
+     * Reads the current value of the gauge.
+     *
+     * @return The current value of the gauge.
+     */
+    long getValue ();
+}
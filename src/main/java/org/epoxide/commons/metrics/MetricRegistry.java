@@ -0,0 +1,318 @@
+package org.epoxide.commons.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.epoxide.commons.EpoxideCommons;
+
+/**
+ * A named collection of metrics. Metrics are created on first use, and looking up an existing
+ * metric is lock-free. The values of all metrics can be read as a snapshot, written to a
+ * file periodically, or published through JMX.
+ */
+public class MetricRegistry {
+
+    /**
+     * The executor used for periodic dumps. Created when the first dump is scheduled.
+     */
+    private static ScheduledExecutorService dumpExecutor;
+
+    /**
+     * The name of the registry. Used as the name of the JMX bean.
+     */
+    private final String name;
+
+    /**
+     * All of the metrics in the registry, by name.
+     */
+    private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new metric registry.
+     *
+     * @param name The name of the registry.
+     */
+    public MetricRegistry (String name) {
+
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the registry.
+     *
+     * @return The name of the registry.
+     */
+    public String getName () {
+
+        return this.name;
+    }
+
+    /**
+     * Gets a counter from the registry. If it does not exist yet it will be created.
+     *
+     * @param name The name of the counter.
+     * @return The counter for the passed name.
+     */
+    public Counter counter (String name) {
+
+        return this.getMetric(name, Counter.class, Counter::new);
+    }
+
+    /**
+     * Gets a timer from the registry. If it does not exist yet it will be created.
+     *
+     * @param name The name of the timer.
+     * @return The timer for the passed name.
+     */
+    public Timer timer (String name) {
+
+        return this.getMetric(name, Timer.class, Timer::new);
+    }
+
+    /**
+     * Registers a gauge with the registry. This will replace any gauge with the same name.
+     *
+     * @param name The name of the gauge.
+     * @param gauge The gauge to register.
+     * @return The gauge being registered, for convenience.
+     */
+    public Gauge gauge (String name, Gauge gauge) {
+
+        final Object existing = this.metrics.get(name);
+
+        if (existing != null && !(existing instanceof Gauge)) {
+            throw new IllegalArgumentException("The metric " + name + " is already registered as a " + existing.getClass().getSimpleName());
+        }
+
+        this.metrics.put(name, gauge);
+        return gauge;
+    }
+
+    /**
+     * Removes a metric from the registry.
+     *
+     * @param name The name of the metric to remove.
+     * @return Whether or not a metric was removed.
+     */
+    public boolean remove (String name) {
+
+        return this.metrics.remove(name) != null;
+    }
+
+    /**
+     * Takes a snapshot of the values of every metric in the registry, sorted by name. Timers
+     * are split into three values, with the suffixes {@code .count}, {@code .total} and
+     * {@code .max}. Times are in nanoseconds.
+     *
+     * @return A sorted map of metric names to their values.
+     */
+    public SortedMap<String, Long> snapshot () {
+
+        final SortedMap<String, Long> snapshot = new TreeMap<>();
+
+        for (final Entry<String, Object> entry : this.metrics.entrySet()) {
+
+            final Object metric = entry.getValue();
+
+            if (metric instanceof Counter) {
+
+                snapshot.put(entry.getKey(), ((Counter) metric).getCount());
+            }
+
+            else if (metric instanceof Timer) {
+
+                final Timer timer = (Timer) metric;
+                snapshot.put(entry.getKey() + ".count", timer.getCount());
+                snapshot.put(entry.getKey() + ".total", timer.getTotalTime());
+                snapshot.put(entry.getKey() + ".max", timer.getMaxTime());
+            }
+
+            else if (metric instanceof Gauge) {
+
+                snapshot.put(entry.getKey(), ((Gauge) metric).getValue());
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Writes a snapshot of the registry. Each value is written on its own line, using the
+     * format {@code name=value}.
+     *
+     * @param writer The writer to write the snapshot to. This will not be closed.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void dump (Writer writer) throws IOException {
+
+        for (final Entry<String, Long> entry : this.snapshot().entrySet()) {
+
+            writer.write(entry.getKey());
+            writer.write('=');
+            writer.write(Long.toString(entry.getValue()));
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Writes a snapshot of the registry to a file. The snapshot is written to a temporary
+     * file first and then moved into place, so readers never see a partial snapshot.
+     *
+     * @param file The file to write the snapshot to.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void dump (Path file) throws IOException {
+
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+
+            this.dump(writer);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Schedules a snapshot of the registry to be written to a file periodically. The dumps
+     * run on a shared daemon thread. Cancel the returned future to stop the dumps.
+     *
+     * @param file The file to write the snapshot to.
+     * @param period The time between dumps.
+     * @param unit The unit of the period.
+     * @return A future which can be used to cancel the dumps.
+     */
+    public ScheduledFuture<?> scheduleDump (Path file, long period, TimeUnit unit) {
+
+        return getDumpExecutor().scheduleAtFixedRate( () -> {
+
+            try {
+
+                this.dump(file);
+            }
+
+            catch (final IOException e) {
+
+                EpoxideCommons.getLazyLogger().warningLimited(file, () -> "Could not write metrics for " + this.name + " to " + file, e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Publishes the registry through JMX, using the platform MBean server. Every metric in
+     * the snapshot is exposed as a read only attribute.
+     *
+     * @return The name of the published bean, or null if it could not be published.
+     */
+    public ObjectName registerMBean () {
+
+        try {
+
+            final ObjectName objectName = this.getObjectName();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName);
+            return objectName;
+        }
+
+        catch (final JMException e) {
+
+            EpoxideCommons.getLogger().log(Level.WARNING, "Could not register the metrics bean for " + this.name, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the published JMX bean for the registry, if there is one.
+     *
+     * @return Whether or not the bean was removed.
+     */
+    public boolean unregisterMBean () {
+
+        try {
+
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.getObjectName());
+            return true;
+        }
+
+        catch (final JMException e) {
+
+            return false;
+        }
+    }
+
+    /**
+     * Gets the JMX object name used for the registry.
+     *
+     * @return The object name for the registry.
+     * @throws JMException If the name of the registry is not valid.
+     */
+    private ObjectName getObjectName () throws JMException {
+
+        return new ObjectName("org.epoxide.commons:type=Metrics,name=" + ObjectName.quote(this.name));
+    }
+
+    /**
+     * Gets or creates a metric of a specific type.
+     *
+     * @param name The name of the metric.
+     * @param type The type of the metric.
+     * @param factory A factory used to create the metric if it does not exist.
+     * @return The metric for the passed name.
+     */
+    private <T> T getMetric (String name, Class<T> type, Supplier<T> factory) {
+
+        Object metric = this.metrics.get(name);
+
+        if (metric == null) {
+            metric = this.metrics.computeIfAbsent(name, key -> factory.get());
+        }
+
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("The metric " + name + " is already registered as a " + metric.getClass().getSimpleName());
+        }
+
+        return type.cast(metric);
+    }
+
+    /**
+     * Gets the executor used for periodic dumps, creating it if needed.
+     *
+     * @return The executor for periodic dumps.
+     */
+    private static synchronized ScheduledExecutorService getDumpExecutor () {
+
+        if (dumpExecutor == null) {
+
+            dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+                final Thread thread = new Thread(runnable, "Epoxide Metrics Dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return dumpExecutor;
+    }
+}
@@ -0,0 +1,98 @@
+package org.epoxide.commons.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * A JMX bean which exposes the values of a {@link MetricRegistry}. The metrics in a registry
+ * are created on demand, so the attributes of the bean are built from a fresh snapshot each
+ * time they are requested.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    /**
+     * The registry being exposed.
+     */
+    private final MetricRegistry registry;
+
+    /**
+     * Constructs a new bean for a registry.
+     *
+     * @param registry The registry to expose.
+     */
+    MetricsMBean (MetricRegistry registry) {
+
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute (String attribute) throws AttributeNotFoundException {
+
+        final Long value = this.registry.snapshot().get(attribute);
+
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes (String[] attributes) {
+
+        final Map<String, Long> snapshot = this.registry.snapshot();
+        final AttributeList list = new AttributeList();
+
+        for (final String attribute : attributes) {
+
+            final Long value = snapshot.get(attribute);
+
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public void setAttribute (Attribute attribute) throws AttributeNotFoundException {
+
+        throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes (AttributeList attributes) {
+
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke (String actionName, Object[] params, String[] signature) throws ReflectionException {
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo () {
+
+        final Map<String, Long> snapshot = this.registry.snapshot();
+        final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int index = 0;
+
+        for (final Entry<String, Long> entry : snapshot.entrySet()) {
+            attributes[index++] = new MBeanAttributeInfo(entry.getKey(), "long", entry.getKey(), true, false, false);
+        }
+
+        return new MBeanInfo(MetricsMBean.class.getName(), "Metrics for " + this.registry.getName(), attributes, null, new MBeanOperationInfo[0], null);
+    }
+}
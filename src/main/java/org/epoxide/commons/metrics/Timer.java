@@ -0,0 +1,79 @@
+package org.epoxide.commons.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A metric which tracks the amount of times something happened, along with the total and
+ * maximum time it took. Like {@link Counter}, all values are striped so many threads can
+ * record at once.
+ */
+public final class Timer {
+
+    /**
+     * The amount of times recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The total of all times recorded, in nanoseconds.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * The longest time recorded, in nanoseconds.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a new time.
+     *
+     * @param nanos The time to record, in nanoseconds.
+     */
+    public void record (long nanos) {
+
+        this.count.increment();
+        this.total.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    /**
+     * Gets the amount of times which have been recorded.
+     *
+     * @return The amount of recorded times.
+     */
+    public long getCount () {
+
+        return this.count.sum();
+    }
+
+    /**
+     * Gets the total of all recorded times.
+     *
+     * @return The total time in nanoseconds.
+     */
+    public long getTotalTime () {
+
+        return this.total.sum();
+    }
+
+    /**
+     * Gets the longest recorded time.
+     *
+     * @return The longest time in nanoseconds.
+     */
+    public long getMaxTime () {
+
+        return this.max.get();
+    }
+
+    /**
+     * Resets all of the values of the timer.
+     */
+    public void reset () {
+
+        this.count.reset();
+        this.total.reset();
+        this.max.reset();
+    }
+}
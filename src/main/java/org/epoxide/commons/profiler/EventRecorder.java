@@ -0,0 +1,459 @@
+package org.epoxide.commons.profiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the most recent profiler events for every thread which uses it. Each thread gets
+ * its own preallocated ring buffer which stores the section id, start time and end time of
+ * an event as primitive longs. Recording an event is wait-free, as only the owning thread
+ * ever writes to a buffer. Once a buffer is full the oldest events are overwritten, so the
+ * recorder always holds a window of the most recent events which can be dumped after
+ * something has gone wrong, such as a lag spike.
+ *
+ * Section names are mapped to int ids using {@link #getSectionId(String)}, so the names do
+ * not need to be stored with every event.
+ *
+ * Buffers only hold their thread weakly. The buffers of threads which have died are released
+ * the next time a new thread starts recording, so memory does not grow with thread churn, and
+ * the last events of a dead thread can still be dumped until then.
+ */
+public class EventRecorder {
+
+    /**
+     * The amount of longs used to store a single event.
+     */
+    private static final int EVENT_SIZE = 3;
+
+    /**
+     * A handle for a load fence, which stops reads from being moved past it.
+     */
+    private static final MethodHandle LOAD_FENCE = findFence("loadFence");
+
+    /**
+     * A handle for a store fence, which stops writes from being moved past it.
+     */
+    private static final MethodHandle STORE_FENCE = findFence("storeFence");
+
+    /**
+     * Written by the fallback fence, when neither VarHandle nor Unsafe fences are available.
+     */
+    private static volatile int fallbackFence;
+
+    /**
+     * The amount of events each thread buffer can hold. Always a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * A map of section names to their ids.
+     */
+    private final ConcurrentHashMap<String, Integer> sectionIds = new ConcurrentHashMap<>();
+
+    /**
+     * A list of section names, where the index is the id of the section.
+     */
+    private final List<String> sectionNames = new CopyOnWriteArrayList<>();
+
+    /**
+     * A list of all buffers which have been created by the recorder.
+     */
+    private final List<Buffer> buffers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The buffer for the current thread.
+     */
+    private final ThreadLocal<Buffer> localBuffer = ThreadLocal.withInitial(this::createBuffer);
+
+    /**
+     * Constructs a new event recorder.
+     *
+     * @param capacity The amount of events to keep for each thread. This will be rounded up
+     *        to the next power of two.
+     */
+    public EventRecorder (int capacity) {
+
+        if (capacity < 1 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^28, got " + capacity);
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Gets the id for a section name. If the name has not been seen before a new id will be
+     * assigned to it.
+     *
+     * @param name The name of the section.
+     * @return The id of the section.
+     */
+    public int getSectionId (String name) {
+
+        final Integer id = this.sectionIds.get(name);
+        return id != null ? id : this.assignSectionId(name);
+    }
+
+    /**
+     * Gets the name of a section from its id.
+     *
+     * @param id The id of the section.
+     * @return The name of the section, or null if the id has not been assigned.
+     */
+    public String getSectionName (int id) {
+
+        return id >= 0 && id < this.sectionNames.size() ? this.sectionNames.get(id) : null;
+    }
+
+    /**
+     * Records an event in the buffer for the current thread. This will overwrite the oldest
+     * event if the buffer is full.
+     *
+     * @param sectionId The id of the section, from {@link #getSectionId(String)}.
+     * @param startTime The start time of the event, in nanoseconds.
+     * @param endTime The end time of the event, in nanoseconds.
+     */
+    public void record (int sectionId, long startTime, long endTime) {
+
+        this.localBuffer.get().record(sectionId, startTime, endTime);
+    }
+
+    /**
+     * Gets the amount of events each thread buffer can hold.
+     *
+     * @return The capacity of the thread buffers.
+     */
+    public int getCapacity () {
+
+        return this.capacity;
+    }
+
+    /**
+     * Writes all events currently held by the recorder. Events are grouped by thread, from
+     * oldest to newest. Each thread starts with a header line of {@code thread} and the name
+     * of the thread, separated by a tab. Each event is then written on its own line using the
+     * format {@code section startTime endTime}, separated by tabs. Thread and section names
+     * often contain spaces, so tabs, line breaks and backslashes in them are escaped as
+     * {@code \t}, {@code \n}, {@code \r} and {@code \\}. This can be called from any thread
+     * while other threads are still recording.
+     *
+     * @param writer The writer to write the events to. This will not be closed.
+     * @throws IOException If the events could not be written.
+     */
+    public void dump (Writer writer) throws IOException {
+
+        final long[] events = new long[this.capacity * EVENT_SIZE];
+
+        for (final Buffer buffer : this.buffers) {
+
+            final int count = buffer.snapshot(events);
+
+            if (count == 0) {
+                continue;
+            }
+
+            writer.write("thread\t");
+            writer.write(escape(buffer.threadName));
+            writer.write('\n');
+
+            for (int index = 0; index < count; index++) {
+
+                final int offset = index * EVENT_SIZE;
+                writer.write(escape(String.valueOf(this.getSectionName((int) events[offset]))));
+                writer.write('\t');
+                writer.write(Long.toString(events[offset + 1]));
+                writer.write('\t');
+                writer.write(Long.toString(events[offset + 2]));
+                writer.write('\n');
+            }
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Writes all events currently held by the recorder to a file. See
+     * {@link #dump(Writer)} for the format used.
+     *
+     * @param file The file to write the events to. It will be replaced if it already exists.
+     * @throws IOException If the events could not be written.
+     */
+    public void dump (Path file) throws IOException {
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+
+            this.dump(writer);
+        }
+    }
+
+    /**
+     * Assigns a new id to a section name. This is synchronized so that ids stay in line with
+     * {@link #sectionNames}.
+     *
+     * @param name The name of the section.
+     * @return The id of the section.
+     */
+    private synchronized int assignSectionId (String name) {
+
+        final Integer existing = this.sectionIds.get(name);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        final int id = this.sectionNames.size();
+        this.sectionNames.add(name);
+        this.sectionIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Creates a new buffer for the current thread, and adds it to {@link #buffers}.
+     *
+     * @return The new buffer.
+     */
+    private Buffer createBuffer () {
+
+        final Buffer buffer = new Buffer(Thread.currentThread(), this.capacity);
+        this.buffers.removeIf(existing -> !existing.isOwnerAlive());
+        this.buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Escapes a name so it can be written as a single field of a dump. See
+     * {@link #dump(Writer)}.
+     *
+     * @param name The name to escape.
+     * @return The escaped name.
+     */
+    private static String escape (String name) {
+
+        final StringBuilder builder = new StringBuilder(name.length());
+
+        for (int index = 0; index < name.length(); index++) {
+
+            final char character = name.charAt(index);
+
+            switch (character) {
+
+                case '\t':
+                    builder.append("\\t");
+                    break;
+
+                case '\n':
+                    builder.append("\\n");
+                    break;
+
+                case '\r':
+                    builder.append("\\r");
+                    break;
+
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+
+                default:
+                    builder.append(character);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Finds a memory fence method. Java 9 and later have these on VarHandle, while Java 8
+     * only has them on Unsafe. If neither can be used, a volatile write is used instead, which
+     * acts as a full fence on common hardware.
+     *
+     * @param name The name of the fence method.
+     * @return A handle which takes no arguments and runs the fence.
+     */
+    private static MethodHandle findFence (String name) {
+
+        final MethodType type = MethodType.methodType(void.class);
+
+        try {
+
+            return MethodHandles.publicLookup().findStatic(Class.forName("java.lang.invoke.VarHandle"), name, type);
+        }
+
+        catch (final ReflectiveOperationException | RuntimeException e) {
+
+            // Java 8 does not have VarHandle, Unsafe is tried next.
+        }
+
+        try {
+
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup().findVirtual(unsafeClass, name, type).bindTo(field.get(null));
+        }
+
+        catch (final ReflectiveOperationException | RuntimeException e) {
+
+            try {
+
+                return MethodHandles.lookup().findStatic(EventRecorder.class, "volatileFence", type);
+            }
+
+            catch (final ReflectiveOperationException e2) {
+
+                throw new IllegalStateException("Could not find a memory fence", e2);
+            }
+        }
+    }
+
+    /**
+     * A fence used when no fence methods are available. See {@link #findFence(String)}.
+     */
+    private static void volatileFence () {
+
+        fallbackFence++;
+    }
+
+    /**
+     * Runs a fence from {@link #findFence(String)}.
+     *
+     * @param fence The fence to run.
+     */
+    private static void runFence (MethodHandle fence) {
+
+        try {
+
+            fence.invokeExact();
+        }
+
+        catch (final Throwable e) {
+
+            throw new IllegalStateException("Could not run a memory fence", e);
+        }
+    }
+
+    /**
+     * A ring buffer of events owned by a single thread.
+     */
+    private static final class Buffer {
+
+        /**
+         * The name of the thread which owns the buffer.
+         */
+        private final String threadName;
+
+        /**
+         * The thread which owns the buffer. This is weak so the buffer does not keep the
+         * thread from being collected.
+         */
+        private final WeakReference<Thread> owner;
+
+        /**
+         * The event data. Each event takes up {@link EventRecorder#EVENT_SIZE} longs.
+         */
+        private final long[] data;
+
+        /**
+         * A mask used to wrap event indexes around the buffer.
+         */
+        private final int mask;
+
+        /**
+         * The total amount of events which have been written. Only the owning thread writes
+         * to this, other threads read it to tell which events are safe to copy.
+         */
+        private final AtomicLong written = new AtomicLong();
+
+        /**
+         * Constructs a new buffer.
+         *
+         * @param owner The thread which owns the buffer.
+         * @param capacity The amount of events to hold. Must be a power of two.
+         */
+        Buffer (Thread owner, int capacity) {
+
+            this.threadName = owner.getName();
+            this.owner = new WeakReference<>(owner);
+            this.data = new long[capacity * EVENT_SIZE];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Writes an event into the buffer. Only the owning thread may call this.
+         *
+         * @param sectionId The id of the section.
+         * @param startTime The start time of the event.
+         * @param endTime The end time of the event.
+         */
+        void record (int sectionId, long startTime, long endTime) {
+
+            final long position = this.written.get();
+
+            // Keeps these writes from being seen before the previous update to written.
+            runFence(STORE_FENCE);
+            final int offset = ((int) position & this.mask) * EVENT_SIZE;
+            this.data[offset] = sectionId;
+            this.data[offset + 1] = startTime;
+            this.data[offset + 2] = endTime;
+            this.written.lazySet(position + 1);
+        }
+
+        /**
+         * Checks if the thread which owns the buffer is still alive.
+         *
+         * @return Whether or not the owning thread is alive.
+         */
+        boolean isOwnerAlive () {
+
+            final Thread thread = this.owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        /**
+         * Copies the events in the buffer, from oldest to newest. Events which were
+         * overwritten by the owning thread while being copied are dropped.
+         *
+         * @param out The array to copy the events to. Must be as large as the buffer.
+         * @return The amount of events copied.
+         */
+        int snapshot (long[] out) {
+
+            final int capacity = this.mask + 1;
+            final long end = this.written.get();
+            long start = Math.max(0, end - capacity);
+
+            for (long position = start; position < end; position++) {
+
+                final int from = ((int) position & this.mask) * EVENT_SIZE;
+                final int to = (int) (position - start) * EVENT_SIZE;
+                System.arraycopy(this.data, from, out, to, EVENT_SIZE);
+            }
+
+            // Slots the writer has reached since the first read may be torn, so they are
+            // dropped. The fence keeps the copy from being read after written is read again.
+            runFence(LOAD_FENCE);
+            final long lapped = this.written.get() - capacity + 1;
+
+            if (lapped > start) {
+
+                final int dropped = (int) Math.min(lapped - start, end - start);
+                System.arraycopy(out, dropped * EVENT_SIZE, out, 0, (int) (end - start - dropped) * EVENT_SIZE);
+                start += dropped;
+            }
+
+            return (int) (end - start);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package org.epoxide.commons.profiler;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.metrics.MetricRegistry;
+import org.epoxide.commons.metrics.Timer;
 
 /**
  * A simple tool for profiling code. The system revolves around {@link ProfilerEntry} which is
@@ -16,6 +22,23 @@ import org.epoxide.commons.EpoxideCommons;
  * negligible performance impact. While profiling production code is not advised, it may be
  * useful for applications with a debug mode.
  *
+ * For code which is too hot to profile every time, a sample rate can be set using
+ * {@link #setSampleRate(int)}. When sampling, only one in every N top level entries will be
+ * recorded, along with all of their sub entries. Skipped entries do not read the clock or
+ * create any objects. Recorded entries carry the sample rate as their weight, so
+ * {@link ProfilerEntry#getEstimatedTime()} can be used to scale them back up to an estimated
+ * total.
+ *
+ * Entries can also track the CPU time and the amount of bytes allocated by the profiling
+ * thread, using {@link #setTrackCpuTime(boolean)} and {@link #setTrackAllocations(boolean)}.
+ * These are useful for finding sections which are slowed down by garbage collection or
+ * contention rather than their own work.
+ *
+ * As an alternative to pairing start and stop calls by hand, {@link #section(String)} can be
+ * used with a try-with-resources statement. Sections will also stop any entries that were
+ * started inside of them but never stopped, so an exception can not leave the profiler
+ * pointing at the wrong entry.
+ *
  * @author Tyler Hancock (Darkhax)
  */
 public class Profiler {
@@ -37,6 +60,62 @@ public class Profiler {
      */
     private ProfilerEntry current;
 
+    /**
+     * The sample rate of the profiler. Only one in every N top level entries will be
+     * recorded. A rate of 1 will record every entry.
+     */
+    private int sampleRate = 1;
+
+    /**
+     * The amount of top level entries left before the next one is recorded.
+     */
+    private int sampleCountdown = 1;
+
+    /**
+     * The depth of the entry currently being skipped by the sampler. When this is above 0,
+     * calls to {@link #start(String)} and {@link #stop()} only update this counter.
+     */
+    private int skipDepth;
+
+    /**
+     * The amount of entries which have been started but not yet stopped. This includes
+     * entries which were skipped by the sampler.
+     */
+    private int depth;
+
+    /**
+     * The reusable sections handed out by {@link #section(String)}, indexed by the depth they
+     * were opened at.
+     */
+    private ProfilerSection[] sections = new ProfilerSection[8];
+
+    /**
+     * An optional recorder which every completed entry is also written to.
+     */
+    private EventRecorder recorder;
+
+    /**
+     * An optional metric registry. Every completed entry is recorded in a timer named after
+     * the entry.
+     */
+    private MetricRegistry metrics;
+
+    /**
+     * The cached timers for {@link #metrics}, as a tree which mirrors the entry names. This
+     * is the node for the main entry, and is null if there is no metric registry.
+     */
+    private TimerNode timers;
+
+    /**
+     * Whether or not entries should track the CPU time of the profiling thread.
+     */
+    private boolean trackCpuTime;
+
+    /**
+     * Whether or not entries should track the bytes allocated by the profiling thread.
+     */
+    private boolean trackAllocations;
+
     /**
      * Constructor for a profiler. This should be used when you want to create your profiler.
      *
@@ -46,7 +125,8 @@ public class Profiler {
     public Profiler (String profileName) {
 
         this.main = new ProfilerEntry("main");
-        this.main.setTime(System.nanoTime());
+        this.main.setStartTime(System.nanoTime());
+        this.main.setTime(this.main.getStartTime());
         this.current = this.main;
     }
 
@@ -60,14 +140,48 @@ public class Profiler {
 
         if (this.isEnabled()) {
 
+            this.depth++;
+
+            // Entries under a skipped entry are skipped as well, to keep the tree balanced.
+            if (this.skipDepth > 0) {
+
+                this.skipDepth++;
+                return;
+            }
+
+            if (this.current == this.main) {
+
+                if (--this.sampleCountdown > 0) {
+
+                    this.skipDepth = 1;
+                    return;
+                }
+
+                this.sampleCountdown = this.sampleRate;
+            }
+
             final ProfilerEntry entry = new ProfilerEntry(processName);
+            entry.setSampleWeight(this.sampleRate);
 
             if (this.current != null) {
                 this.current.addSubEntry(entry);
             }
 
+            if (this.metrics != null) {
+                entry.setTimerNode(this.getTimerNode(entry, processName));
+            }
+
+            if (this.trackCpuTime) {
+                entry.startCpuTime(ThreadResources.getCpuTime());
+            }
+
+            if (this.trackAllocations) {
+                entry.startAllocatedBytes(ThreadResources.getAllocatedBytes());
+            }
+
             this.current = entry;
-            this.current.setTime(System.nanoTime());
+            this.current.setStartTime(System.nanoTime());
+            this.current.setTime(this.current.getStartTime());
         }
     }
 
@@ -76,19 +190,49 @@ public class Profiler {
      * reflect the duration. This will also switch {@link #current} with the parent of the
      * current process.
      *
-     * @return The ProfilerEntry that was stopped.
+     * @return The ProfilerEntry that was stopped. This will be null if the entry was skipped
+     *         by the sampler.
      */
     public ProfilerEntry stop () {
 
         if (this.isEnabled()) {
 
-            if (this.current == null) {
-                EpoxideCommons.getLogger().warning("An attempt was made to stop profiling a process, but there are no current processes being profiled for " + this.main.getName());
+            if (this.depth == 0) {
+
+                EpoxideCommons.getLazyLogger().warning( () -> "An attempt was made to stop profiling a process, but there are no current processes being profiled for " + this.main.getName());
+                return null;
+            }
+
+            this.depth--;
+
+            if (this.skipDepth > 0) {
+
+                this.skipDepth--;
+                return null;
             }
 
-            this.current.setTime(System.nanoTime() - this.current.getTime());
+            final long endTime = System.nanoTime();
+            this.current.setTime(endTime - this.current.getTime());
             this.current.setComplete(true);
 
+            // Entries which started before tracking was enabled have no start value to subtract.
+            if (this.current.isTrackingCpuTime()) {
+                this.current.setCpuTime(ThreadResources.getCpuTime() - this.current.getCpuTime());
+            }
+
+            if (this.current.isTrackingAllocations()) {
+                this.current.setAllocatedBytes(ThreadResources.getAllocatedBytes() - this.current.getAllocatedBytes());
+            }
+
+            if (this.recorder != null) {
+                this.recorder.record(this.recorder.getSectionId(this.current.getName()), this.current.getStartTime(), endTime);
+            }
+
+            if (this.metrics != null) {
+                final TimerNode node = this.current.getTimerNode();
+                (node != null ? node.timer : this.metrics.timer(this.current.getName())).record(this.current.getTime());
+            }
+
             final ProfilerEntry ending = this.current;
 
             if (this.current.hasParent()) {
@@ -101,6 +245,54 @@ public class Profiler {
         return null;
     }
 
+    /**
+     * Starts profiling a new entry, and returns a section which will stop it once closed. This
+     * is intended to be used with a try-with-resources statement. When the section is closed,
+     * any entries started inside of it which were not stopped will also be stopped.
+     *
+     * The returned section is reused by later sections opened at the same depth, so it should
+     * not be kept around after it has been closed. When the profiler is disabled a shared
+     * section which does nothing is returned.
+     *
+     * @param processName The name of the thing you are profiling.
+     * @return A section which stops the new entry when closed.
+     */
+    public ProfilerSection section (String processName) {
+
+        if (!this.isEnabled()) {
+            return ProfilerSection.DISABLED;
+        }
+
+        this.start(processName);
+
+        if (this.depth >= this.sections.length) {
+            this.sections = Arrays.copyOf(this.sections, this.sections.length * 2);
+        }
+
+        ProfilerSection section = this.sections[this.depth];
+
+        if (section == null) {
+
+            section = new ProfilerSection(this, this.depth);
+            this.sections[this.depth] = section;
+        }
+
+        return section;
+    }
+
+    /**
+     * Stops entries until the amount of open entries is below the passed depth. Used by
+     * {@link ProfilerSection} to close its entry along with any unbalanced sub entries.
+     *
+     * @param targetDepth The depth the section was opened at.
+     */
+    void stopTo (int targetDepth) {
+
+        while (this.isEnabled() && this.depth >= targetDepth) {
+            this.stop();
+        }
+    }
+
     /**
      * Adds a note to the current profiler entry.
      *
@@ -123,6 +315,139 @@ public class Profiler {
         return this;
     }
 
+    /**
+     * Sets the sample rate of the profiler. Only one in every N top level entries will be
+     * recorded, along with all of their sub entries. The rest are skipped without reading the
+     * clock or creating new entries.
+     *
+     * @param sampleRate The amount of top level entries per recorded entry. Must be at least
+     *        1.
+     * @return The same profiler instance, provided for quality of life.
+     */
+    public Profiler setSampleRate (int sampleRate) {
+
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1, got " + sampleRate);
+        }
+
+        this.sampleRate = sampleRate;
+        this.sampleCountdown = 1;
+        return this;
+    }
+
+    /**
+     * Gets the sample rate of the profiler.
+     *
+     * @return The amount of top level entries per recorded entry.
+     */
+    public int getSampleRate () {
+
+        return this.sampleRate;
+    }
+
+    /**
+     * Sets a recorder which every completed entry will also be written to. This allows the
+     * most recent entries to be dumped after a lag spike, see {@link SpikeDetector}.
+     *
+     * @param recorder The recorder to use, or null to stop recording.
+     * @return The same profiler instance, provided for quality of life.
+     */
+    public Profiler setRecorder (EventRecorder recorder) {
+
+        this.recorder = recorder;
+        return this;
+    }
+
+    /**
+     * Gets the recorder which completed entries are written to.
+     *
+     * @return The recorder for the profiler. Can be null.
+     */
+    public EventRecorder getRecorder () {
+
+        return this.recorder;
+    }
+
+    /**
+     * Sets a metric registry which every completed entry will be recorded in. Each entry is
+     * recorded in a timer with the same name as the entry, so the timers aggregate every run
+     * of a section.
+     *
+     * @param metrics The registry to use, or null to stop recording.
+     * @return The same profiler instance, provided for quality of life.
+     */
+    public Profiler setMetrics (MetricRegistry metrics) {
+
+        this.metrics = metrics;
+        this.timers = metrics != null ? new TimerNode(null) : null;
+
+        // Entries which are still running hold timers from the previous registry.
+        for (ProfilerEntry entry = this.current; entry != null; entry = entry.getParent()) {
+            entry.setTimerNode(null);
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the metric registry which completed entries are recorded in.
+     *
+     * @return The metric registry for the profiler. Can be null.
+     */
+    public MetricRegistry getMetrics () {
+
+        return this.metrics;
+    }
+
+    /**
+     * Sets whether or not new entries should track the CPU time used by the profiling thread.
+     * This has no effect if the JVM does not support measuring thread CPU time. Entries
+     * which are already open keep the setting they were started with.
+     *
+     * @param trackCpuTime Whether or not CPU time should be tracked.
+     * @return The same profiler instance, provided for quality of life.
+     */
+    public Profiler setTrackCpuTime (boolean trackCpuTime) {
+
+        this.trackCpuTime = trackCpuTime && ThreadResources.isCpuTimeSupported();
+        return this;
+    }
+
+    /**
+     * Checks if new entries will track the CPU time used by the profiling thread.
+     *
+     * @return Whether or not CPU time is tracked.
+     */
+    public boolean isTrackingCpuTime () {
+
+        return this.trackCpuTime;
+    }
+
+    /**
+     * Sets whether or not new entries should track the bytes allocated by the profiling
+     * thread. This has no effect if the JVM does not support measuring thread allocations,
+     * which is only available on HotSpot based JVMs. Entries which are already open keep the
+     * setting they were started with.
+     *
+     * @param trackAllocations Whether or not allocations should be tracked.
+     * @return The same profiler instance, provided for quality of life.
+     */
+    public Profiler setTrackAllocations (boolean trackAllocations) {
+
+        this.trackAllocations = trackAllocations && ThreadResources.isAllocationSupported();
+        return this;
+    }
+
+    /**
+     * Checks if new entries will track the bytes allocated by the profiling thread.
+     *
+     * @return Whether or not allocations are tracked.
+     */
+    public boolean isTrackingAllocations () {
+
+        return this.trackAllocations;
+    }
+
     /**
      * Checks if the profiler is enabled.
      *
@@ -152,4 +477,60 @@ public class Profiler {
 
         return this.main;
     }
+
+    /**
+     * Gets the timer node for a new entry. Nodes are cached under the node of the parent
+     * entry using the name passed to {@link #start(String)}, so the full name of the entry
+     * only needs to be looked up in {@link #metrics} the first time it is seen.
+     *
+     * @param entry The new entry. Its parent must already be set.
+     * @param processName The name the entry was started with.
+     * @return The timer node for the entry.
+     */
+    private TimerNode getTimerNode (ProfilerEntry entry, String processName) {
+
+        final ProfilerEntry parent = entry.getParent();
+        final TimerNode parentNode = parent == this.main ? this.timers : parent != null ? parent.getTimerNode() : null;
+
+        if (parentNode == null) {
+            return new TimerNode(this.metrics.timer(entry.getName()));
+        }
+
+        TimerNode node = parentNode.children.get(processName);
+
+        if (node == null) {
+
+            node = new TimerNode(this.metrics.timer(entry.getName()));
+            parentNode.children.put(processName, node);
+        }
+
+        return node;
+    }
+
+    /**
+     * A cached timer for an entry, along with the timers of the entries started under it.
+     */
+    static final class TimerNode {
+
+        /**
+         * The timer for the entry. Null for the node of the main entry.
+         */
+        final Timer timer;
+
+        /**
+         * The nodes of the entries started under this one, by the name they were started
+         * with.
+         */
+        final Map<String, TimerNode> children = new HashMap<>();
+
+        /**
+         * Constructs a new timer node.
+         *
+         * @param timer The timer for the entry.
+         */
+        TimerNode (Timer timer) {
+
+            this.timer = timer;
+        }
+    }
 }
\ No newline at end of file
@@ -22,11 +22,37 @@ public class ProfilerEntry {
      */
     private long time;
 
+    /**
+     * The time the entry was started at. Unlike {@link #time} this does not change once the
+     * entry has been completed.
+     */
+    private long startTime;
+
+    /**
+     * The CPU time of the entry. Like {@link #time} this is the thread CPU time at the start
+     * while incomplete, and the CPU time used once complete. Only tracked when enabled in the
+     * {@link Profiler}.
+     */
+    private long cpuTime;
+
+    /**
+     * The allocated bytes of the entry. Like {@link #time} this is the amount of bytes the
+     * thread had allocated at the start while incomplete, and the bytes allocated during the
+     * entry once complete. Only tracked when enabled in the {@link Profiler}.
+     */
+    private long allocatedBytes;
+
     /**
      * The completion flag for the entry.
      */
     private boolean completed;
 
+    /**
+     * The amount of real entries this entry represents. This is only above 1 when the
+     * profiler is sampling.
+     */
+    private int sampleWeight = 1;
+
     /**
      * The parent profiler entry. This will be null for the main entry.
      */
@@ -42,6 +68,25 @@ public class ProfilerEntry {
      */
     private final List<String> notes = new ArrayList<>();
 
+    /**
+     * The cached timer node for the entry. Only set when the {@link Profiler} records entries
+     * in a metric registry.
+     */
+    private Profiler.TimerNode timerNode;
+
+    /**
+     * Whether or not the CPU time was recorded when the entry started. The {@link Profiler}
+     * only measures the CPU time used when this is set, so enabling tracking while the entry
+     * is open does not record the absolute thread CPU time.
+     */
+    private boolean trackingCpuTime;
+
+    /**
+     * Whether or not the allocated bytes were recorded when the entry started. Works the same
+     * way as {@link #trackingCpuTime}.
+     */
+    private boolean trackingAllocations;
+
     /**
      * Constructor for a profiler entry. Only handles the name. The rest of the logic is done
      * in {@link Profiler}.
@@ -85,6 +130,103 @@ public class ProfilerEntry {
         this.time = time;
     }
 
+    /**
+     * Gets the amount of real entries this entry represents. When the profiler is sampling
+     * this will be the sample rate at the time the entry was started.
+     *
+     * @return The sample weight of the entry.
+     */
+    public int getSampleWeight () {
+
+        return this.sampleWeight;
+    }
+
+    /**
+     * Sets the sample weight to an arbitrary value.
+     *
+     * @param sampleWeight The amount of real entries this entry represents.
+     */
+    public void setSampleWeight (int sampleWeight) {
+
+        this.sampleWeight = sampleWeight;
+    }
+
+    /**
+     * Gets the estimated total time of all the entries this entry represents. This is the
+     * duration of the entry scaled up by the sample weight, and is only meaningful once the
+     * entry is complete.
+     *
+     * @return The estimated total time for the entry.
+     */
+    public long getEstimatedTime () {
+
+        return this.time * this.sampleWeight;
+    }
+
+    /**
+     * Gets the time the entry was started at, as reported by {@link System#nanoTime()}.
+     *
+     * @return The start time of the entry.
+     */
+    public long getStartTime () {
+
+        return this.startTime;
+    }
+
+    /**
+     * Sets the start time to an arbitrary value.
+     *
+     * @param startTime The long to use for the start time.
+     */
+    public void setStartTime (long startTime) {
+
+        this.startTime = startTime;
+    }
+
+    /**
+     * Gets the CPU time for the profiler entry. When the entry is complete this is the CPU
+     * time in nanoseconds used by the thread during the entry. This will be 0 if CPU time was
+     * not tracked.
+     *
+     * @return The CPU time value for the entry.
+     */
+    public long getCpuTime () {
+
+        return this.cpuTime;
+    }
+
+    /**
+     * Sets the CPU time value to an arbitrary value.
+     *
+     * @param cpuTime The long to use for the CPU time value.
+     */
+    public void setCpuTime (long cpuTime) {
+
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * Gets the allocated bytes for the profiler entry. When the entry is complete this is the
+     * amount of bytes allocated by the thread during the entry, including sub entries. This
+     * will be 0 if allocations were not tracked.
+     *
+     * @return The allocated bytes value for the entry.
+     */
+    public long getAllocatedBytes () {
+
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Sets the allocated bytes value to an arbitrary value.
+     *
+     * @param allocatedBytes The long to use for the allocated bytes value.
+     */
+    public void setAllocatedBytes (long allocatedBytes) {
+
+        this.allocatedBytes = allocatedBytes;
+    }
+
     /**
      * Checks if the entry has been completed. This will bet set to true after
      * {@link Profiler#stop()} has been called while this entry is the current entry.
@@ -139,6 +281,70 @@ public class ProfilerEntry {
         return this.parent;
     }
 
+    /**
+     * Gets the cached timer node for the entry.
+     *
+     * @return The timer node for the entry. Can be null.
+     */
+    Profiler.TimerNode getTimerNode () {
+
+        return this.timerNode;
+    }
+
+    /**
+     * Sets the cached timer node for the entry.
+     *
+     * @param timerNode The timer node for the entry. Can be null.
+     */
+    void setTimerNode (Profiler.TimerNode timerNode) {
+
+        this.timerNode = timerNode;
+    }
+
+    /**
+     * Checks if the CPU time was recorded when the entry started.
+     *
+     * @return Whether or not the entry tracks CPU time.
+     */
+    boolean isTrackingCpuTime () {
+
+        return this.trackingCpuTime;
+    }
+
+    /**
+     * Records the thread CPU time at the start of the entry, and marks the entry as tracking
+     * CPU time.
+     *
+     * @param cpuTime The thread CPU time at the start of the entry.
+     */
+    void startCpuTime (long cpuTime) {
+
+        this.cpuTime = cpuTime;
+        this.trackingCpuTime = true;
+    }
+
+    /**
+     * Checks if the allocated bytes were recorded when the entry started.
+     *
+     * @return Whether or not the entry tracks allocations.
+     */
+    boolean isTrackingAllocations () {
+
+        return this.trackingAllocations;
+    }
+
+    /**
+     * Records the bytes allocated by the thread at the start of the entry, and marks the entry
+     * as tracking allocations.
+     *
+     * @param allocatedBytes The bytes allocated by the thread at the start of the entry.
+     */
+    void startAllocatedBytes (long allocatedBytes) {
+
+        this.allocatedBytes = allocatedBytes;
+        this.trackingAllocations = true;
+    }
+
     /**
      * Sets the parent entry for the sub entry. This will also prefix the name of the entry
      * with the name of the parent entry.
@@ -151,6 +357,26 @@ public class ProfilerEntry {
         this.name = parent.getName() + "#" + this.getName();
     }
 
+    /**
+     * Gets the name of the entry without the names of its parents prefixed to it.
+     *
+     * @return The short name of the entry.
+     */
+    public String getShortName () {
+
+        if (this.hasParent()) {
+
+            final String parentName = this.parent.getName();
+            final int length = parentName.length();
+
+            if (this.name.length() > length && this.name.charAt(length) == '#' && this.name.startsWith(parentName)) {
+                return this.name.substring(length + 1);
+            }
+        }
+
+        return this.name;
+    }
+
     /**
      * Checks if this entry has a parent.
      *
@@ -0,0 +1,353 @@
+package org.epoxide.commons.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This singleton class is meant to hold code for writing {@link ProfilerEntry} trees to
+ * formats which can be read by external tools. All of the exporters write their output
+ * incrementally while walking the tree, so the full document is never held in memory. The
+ * tree is walked without recursion, so very deep trees are also supported.
+ */
+public final class ProfilerExporter {
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private ProfilerExporter () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Writes the entries of a profiler in the collapsed stack format used by Brendan Gregg's
+     * flame graph scripts. Each completed entry is written as a line containing the names of
+     * the entries leading up to it separated by semicolons, followed by the self time of the
+     * entry in nanoseconds. Sampled entries are scaled up using their estimated time.
+     *
+     * @param root The entry to start from. This is usually {@link Profiler#getMain()}.
+     * @param writer The writer to write the output to. This will not be closed.
+     * @throws IOException If the output could not be written.
+     */
+    public static void writeCollapsedStacks (ProfilerEntry root, Writer writer) throws IOException {
+
+        walk(root, new CollapsedStackVisitor(writer));
+        writer.flush();
+    }
+
+    /**
+     * Writes the entries of a profiler in the collapsed stack format to a channel, such as a
+     * FileChannel. The output is encoded using UTF-8.
+     *
+     * @param root The entry to start from. This is usually {@link Profiler#getMain()}.
+     * @param channel The channel to write the output to. This will not be closed.
+     * @throws IOException If the output could not be written.
+     */
+    public static void writeCollapsedStacks (ProfilerEntry root, WritableByteChannel channel) throws IOException {
+
+        writeCollapsedStacks(root, Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+    }
+
+    /**
+     * Writes the entries of a profiler in the Chrome trace event format. The output can be
+     * opened with chrome://tracing or similar viewers. Each completed entry is written as a
+     * complete event, with times relative to the start of the root entry.
+     *
+     * @param root The entry to start from. This is usually {@link Profiler#getMain()}.
+     * @param writer The writer to write the output to. This will not be closed.
+     * @throws IOException If the output could not be written.
+     */
+    public static void writeChromeTrace (ProfilerEntry root, Writer writer) throws IOException {
+
+        writer.write("{\"traceEvents\":[");
+        walk(root, new ChromeTraceVisitor(writer, root.getStartTime()));
+        writer.write("\n],\"displayTimeUnit\":\"ns\"}\n");
+        writer.flush();
+    }
+
+    /**
+     * Writes the entries of a profiler in the Chrome trace event format to a channel, such as
+     * a FileChannel. The output is encoded using UTF-8.
+     *
+     * @param root The entry to start from. This is usually {@link Profiler#getMain()}.
+     * @param channel The channel to write the output to. This will not be closed.
+     * @throws IOException If the output could not be written.
+     */
+    public static void writeChromeTrace (ProfilerEntry root, WritableByteChannel channel) throws IOException {
+
+        writeChromeTrace(root, Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+    }
+
+    /**
+     * Walks an entry tree in depth first order without using recursion. Sub entries are
+     * visited in the order they were added.
+     *
+     * @param root The entry to start walking from.
+     * @param visitor The visitor to pass every entry to.
+     * @throws IOException If the visitor could not write its output.
+     */
+    private static void walk (ProfilerEntry root, EntryVisitor visitor) throws IOException {
+
+        ProfilerEntry[] entries = new ProfilerEntry[16];
+        int[] indexes = new int[16];
+        int depth = 0;
+
+        entries[0] = root;
+        visitor.visit(root, 0);
+
+        while (depth >= 0) {
+
+            final List<ProfilerEntry> subEntries = entries[depth].getSubEntries();
+            final int index = indexes[depth];
+
+            if (index >= subEntries.size()) {
+
+                entries[depth--] = null;
+                continue;
+            }
+
+            indexes[depth] = index + 1;
+            final ProfilerEntry next = subEntries.get(index);
+
+            if (++depth == entries.length) {
+
+                entries = Arrays.copyOf(entries, depth * 2);
+                indexes = Arrays.copyOf(indexes, depth * 2);
+            }
+
+            entries[depth] = next;
+            indexes[depth] = 0;
+            visitor.visit(next, depth);
+        }
+    }
+
+    /**
+     * Gets the time an entry spent outside of its sub entries, scaled up by the sample
+     * weight.
+     *
+     * @param entry The entry to get the self time for.
+     * @return The estimated self time, or 0 if it could not be determined.
+     */
+    private static long getSelfTime (ProfilerEntry entry) {
+
+        long time = entry.getEstimatedTime();
+
+        for (final ProfilerEntry subEntry : entry.getSubEntries()) {
+            if (subEntry.isComplete()) {
+                time -= subEntry.getEstimatedTime();
+            }
+        }
+
+        return Math.max(time, 0);
+    }
+
+    /**
+     * A visitor for entries in an entry tree.
+     */
+    private interface EntryVisitor {
+
+        /**
+         * Visits an entry in the tree.
+         *
+         * @param entry The entry being visited.
+         * @param depth The depth of the entry. The root entry has a depth of 0.
+         * @throws IOException If the visitor could not write its output.
+         */
+        void visit (ProfilerEntry entry, int depth) throws IOException;
+    }
+
+    /**
+     * Writes entries in the collapsed stack format. The current stack is kept in a single
+     * builder, which is trimmed back to the length of the parent stack for each entry.
+     */
+    private static class CollapsedStackVisitor implements EntryVisitor {
+
+        /**
+         * The writer to write the output to.
+         */
+        private final Writer writer;
+
+        /**
+         * The stack of entry names leading up to the current entry.
+         */
+        private final StringBuilder stack = new StringBuilder();
+
+        /**
+         * The length of the stack at each depth.
+         */
+        private int[] lengths = new int[16];
+
+        /**
+         * Constructs a new visitor for the collapsed stack format.
+         *
+         * @param writer The writer to write the output to.
+         */
+        CollapsedStackVisitor (Writer writer) {
+
+            this.writer = writer;
+        }
+
+        @Override
+        public void visit (ProfilerEntry entry, int depth) throws IOException {
+
+            if (depth == this.lengths.length) {
+                this.lengths = Arrays.copyOf(this.lengths, depth * 2);
+            }
+
+            this.stack.setLength(depth == 0 ? 0 : this.lengths[depth - 1]);
+
+            if (depth > 0) {
+                this.stack.append(';');
+            }
+
+            // Semicolons separate frames, and whitespace separates the frames from the value.
+            final String name = entry.getShortName();
+
+            for (int index = 0; index < name.length(); index++) {
+
+                final char character = name.charAt(index);
+                this.stack.append(character == ';' || Character.isWhitespace(character) ? '_' : character);
+            }
+
+            this.lengths[depth] = this.stack.length();
+
+            if (entry.isComplete()) {
+
+                final long time = getSelfTime(entry);
+
+                if (time > 0) {
+
+                    this.writer.append(this.stack).append(' ').write(Long.toString(time));
+                    this.writer.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes entries as complete events in the Chrome trace event format.
+     */
+    private static class ChromeTraceVisitor implements EntryVisitor {
+
+        /**
+         * The writer to write the output to.
+         */
+        private final Writer writer;
+
+        /**
+         * The start time of the root entry. All events are written relative to this.
+         */
+        private final long origin;
+
+        /**
+         * Whether or not an event has been written yet. Used to place commas between events.
+         */
+        private boolean written;
+
+        /**
+         * Constructs a new visitor for the Chrome trace event format.
+         *
+         * @param writer The writer to write the output to.
+         * @param origin The start time of the root entry.
+         */
+        ChromeTraceVisitor (Writer writer, long origin) {
+
+            this.writer = writer;
+            this.origin = origin;
+        }
+
+        @Override
+        public void visit (ProfilerEntry entry, int depth) throws IOException {
+
+            if (!entry.isComplete()) {
+                return;
+            }
+
+            this.writer.write(this.written ? ",\n" : "\n");
+            this.writer.write("{\"name\":");
+            writeString(this.writer, entry.getShortName());
+            this.writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":");
+            writeMicros(this.writer, entry.getStartTime() - this.origin);
+            this.writer.write(",\"dur\":");
+            writeMicros(this.writer, entry.getTime());
+
+            if (entry.getSampleWeight() > 1) {
+
+                this.writer.write(",\"args\":{\"sampleWeight\":");
+                this.writer.write(Integer.toString(entry.getSampleWeight()));
+                this.writer.write('}');
+            }
+
+            this.writer.write('}');
+            this.written = true;
+        }
+
+        /**
+         * Writes a nanosecond value as microseconds, which is the unit used by trace events.
+         *
+         * @param writer The writer to write to.
+         * @param nanos The value in nanoseconds.
+         * @throws IOException If the value could not be written.
+         */
+        private static void writeMicros (Writer writer, long nanos) throws IOException {
+
+            final long abs = Math.abs(nanos);
+            final long fraction = abs % 1000;
+
+            if (nanos < 0) {
+                writer.write('-');
+            }
+
+            writer.write(Long.toString(abs / 1000));
+            writer.write('.');
+
+            if (fraction < 100) {
+                writer.write(fraction < 10 ? "00" : "0");
+            }
+
+            writer.write(Long.toString(fraction));
+        }
+
+        /**
+         * Writes a string as a quoted and escaped JSON string.
+         *
+         * @param writer The writer to write to.
+         * @param string The string to write.
+         * @throws IOException If the string could not be written.
+         */
+        private static void writeString (Writer writer, String string) throws IOException {
+
+            writer.write('"');
+
+            for (int index = 0; index < string.length(); index++) {
+
+                final char character = string.charAt(index);
+
+                if (character == '"' || character == '\\') {
+
+                    writer.write('\\');
+                    writer.write(character);
+                }
+
+                else if (character < 0x20) {
+
+                    writer.write(String.format("\\u%04x", (int) character));
+                }
+
+                else {
+
+                    writer.write(character);
+                }
+            }
+
+            writer.write('"');
+        }
+    }
+}
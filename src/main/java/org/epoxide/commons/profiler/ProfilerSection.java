@@ -0,0 +1,49 @@
+package org.epoxide.commons.profiler;
+
+/**
+ * A scope for a {@link Profiler} entry, created by {@link Profiler#section(String)}. Closing
+ * the section will stop its entry, as well as any sub entries which were started but never
+ * stopped. Sections are reused by the profiler, so they should not be held on to after being
+ * closed.
+ */
+public final class ProfilerSection implements AutoCloseable {
+
+    /**
+     * A shared section which does nothing. This is returned while the profiler is disabled.
+     */
+    static final ProfilerSection DISABLED = new ProfilerSection(null, 0);
+
+    /**
+     * The profiler which owns the section. This is null for {@link #DISABLED}.
+     */
+    private final Profiler profiler;
+
+    /**
+     * The depth of the profiler once the entry for this section was started.
+     */
+    private final int depth;
+
+    /**
+     * Constructor for a profiler section. Only used by {@link Profiler}.
+     *
+     * @param profiler The profiler which owns the section.
+     * @param depth The depth of the profiler once the entry was started.
+     */
+    ProfilerSection (Profiler profiler, int depth) {
+
+        this.profiler = profiler;
+        this.depth = depth;
+    }
+
+    /**
+     * Stops the entry for this section. If any sub entries are still running, they will be
+     * stopped first. Closing a section which has already been closed does nothing.
+     */
+    @Override
+    public void close () {
+
+        if (this.profiler != null) {
+            this.profiler.stopTo(this.depth);
+        }
+    }
+}
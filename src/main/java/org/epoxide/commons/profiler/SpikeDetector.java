@@ -0,0 +1,146 @@
+package org.epoxide.commons.profiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+
+import org.epoxide.commons.EpoxideCommons;
+
+/**
+ * Watches the duration of ticks, and dumps the contents of an {@link EventRecorder} to a
+ * file whenever a tick takes longer than a threshold. Each tick is also recorded as an event
+ * in the recorder. A detector is meant to be used by a single tick thread.
+ */
+public class SpikeDetector {
+
+    /**
+     * The recorder to record ticks in, and to dump when a spike is found.
+     */
+    private final EventRecorder recorder;
+
+    /**
+     * The section id used for tick events.
+     */
+    private final int tickId;
+
+    /**
+     * The directory to write dumps to.
+     */
+    private final Path directory;
+
+    /**
+     * The duration in nanoseconds a tick must exceed to be considered a spike.
+     */
+    private final long threshold;
+
+    /**
+     * The minimum time in nanoseconds between two dumps. Prevents a long period of lag from
+     * writing a dump every tick.
+     */
+    private long cooldown;
+
+    /**
+     * The start time of the current tick.
+     */
+    private long tickStart;
+
+    /**
+     * The time of the last dump. Only valid while {@link #dumped} is true.
+     */
+    private long lastDump;
+
+    /**
+     * Whether or not a dump has been written yet.
+     */
+    private boolean dumped;
+
+    /**
+     * Constructs a new spike detector. The cooldown between dumps defaults to the threshold.
+     *
+     * @param recorder The recorder to record ticks in, and to dump when a spike is found.
+     * @param directory The directory to write dumps to.
+     * @param threshold The duration in nanoseconds a tick must exceed to be a spike.
+     */
+    public SpikeDetector (EventRecorder recorder, Path directory, long threshold) {
+
+        this.recorder = recorder;
+        this.tickId = recorder.getSectionId("tick");
+        this.directory = directory;
+        this.threshold = threshold;
+        this.cooldown = threshold;
+    }
+
+    /**
+     * Marks the start of a tick.
+     */
+    public void startTick () {
+
+        this.tickStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a tick which was started with {@link #startTick()}.
+     *
+     * @return Whether or not the tick was a spike which caused a dump to be written.
+     */
+    public boolean endTick () {
+
+        return this.onTick(this.tickStart, System.nanoTime());
+    }
+
+    /**
+     * Handles a tick which has already been timed. The tick is recorded, and if it took
+     * longer than the threshold the recorder will be dumped.
+     *
+     * @param startTime The start time of the tick, in nanoseconds.
+     * @param endTime The end time of the tick, in nanoseconds.
+     * @return Whether or not the tick was a spike which caused a dump to be written.
+     */
+    public boolean onTick (long startTime, long endTime) {
+
+        this.recorder.record(this.tickId, startTime, endTime);
+
+        if (endTime - startTime <= this.threshold || this.dumped && endTime - this.lastDump < this.cooldown) {
+            return false;
+        }
+
+        this.dumped = true;
+        this.lastDump = endTime;
+        final Path file = this.directory.resolve("spike-" + System.currentTimeMillis() + ".log");
+
+        try {
+
+            this.recorder.dump(file);
+            return true;
+        }
+
+        catch (final IOException e) {
+
+            EpoxideCommons.getLogger().log(Level.WARNING, "Could not write profiler spike dump to " + file, e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets the minimum time between two dumps.
+     *
+     * @param cooldown The minimum time between dumps, in nanoseconds.
+     * @return The same detector instance, provided for quality of life.
+     */
+    public SpikeDetector setCooldown (long cooldown) {
+
+        this.cooldown = cooldown;
+        return this;
+    }
+
+    /**
+     * Gets the recorder used by the detector.
+     *
+     * @return The recorder used by the detector.
+     */
+    public EventRecorder getRecorder () {
+
+        return this.recorder;
+    }
+}
@@ -0,0 +1,137 @@
+package org.epoxide.commons.profiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This singleton class reads resource usage of the current thread for the profiler. Support
+ * for each resource is checked once, and unsupported resources always report 0.
+ */
+final class ThreadResources {
+
+    /**
+     * The thread bean of the running JVM.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The thread bean of the running JVM, if it supports reading allocated bytes. This is
+     * only available on HotSpot based JVMs.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = findAllocationBean();
+
+    /**
+     * Whether or not the JVM supports reading the CPU time of the current thread.
+     */
+    private static final boolean CPU_TIME_SUPPORTED = enableCpuTime();
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private ThreadResources () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Checks if the CPU time of the current thread can be read.
+     *
+     * @return Whether or not CPU time is supported.
+     */
+    static boolean isCpuTimeSupported () {
+
+        return CPU_TIME_SUPPORTED;
+    }
+
+    /**
+     * Checks if the allocated bytes of the current thread can be read.
+     *
+     * @return Whether or not allocation tracking is supported.
+     */
+    static boolean isAllocationSupported () {
+
+        return ALLOCATIONS != null;
+    }
+
+    /**
+     * Gets the CPU time used by the current thread.
+     *
+     * @return The CPU time of the current thread in nanoseconds, or 0 if not supported.
+     */
+    static long getCpuTime () {
+
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Gets the total amount of bytes allocated by the current thread.
+     *
+     * @return The bytes allocated by the current thread, or 0 if not supported.
+     */
+    static long getAllocatedBytes () {
+
+        return ALLOCATIONS != null ? ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Enables CPU time measurement on the thread bean, if the JVM supports it.
+     *
+     * @return Whether or not CPU time is supported.
+     */
+    private static boolean enableCpuTime () {
+
+        try {
+
+            if (THREADS.isCurrentThreadCpuTimeSupported()) {
+
+                if (!THREADS.isThreadCpuTimeEnabled()) {
+                    THREADS.setThreadCpuTimeEnabled(true);
+                }
+
+                return true;
+            }
+        }
+
+        catch (final UnsupportedOperationException | SecurityException e) {
+
+            // Falls through to unsupported.
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the HotSpot thread bean and enables allocation measurement on it, if the JVM
+     * supports it.
+     *
+     * @return The HotSpot thread bean, or null if allocations can not be read.
+     */
+    private static com.sun.management.ThreadMXBean findAllocationBean () {
+
+        try {
+
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+
+                final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+
+                if (bean.isThreadAllocatedMemorySupported()) {
+
+                    if (!bean.isThreadAllocatedMemoryEnabled()) {
+                        bean.setThreadAllocatedMemoryEnabled(true);
+                    }
+
+                    return bean;
+                }
+            }
+        }
+
+        catch (final LinkageError | UnsupportedOperationException | SecurityException e) {
+
+            // Falls through to unsupported.
+        }
+
+        return null;
+    }
+}
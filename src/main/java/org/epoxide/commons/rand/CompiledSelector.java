@@ -0,0 +1,420 @@
+package org.epoxide.commons.rand;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * An immutable version of {@link WeightedSelector}, created using
+ * {@link WeightedSelector#compile()} or one of the static factories. Entries are stored in
+ * parallel arrays, and selection uses Vose's alias method, so every selection takes constant
+ * time no matter how many entries there are. Weights are doubles, so large tables do not
+ * overflow the total weight the way int weights can. Weights whose sum is not a finite double
+ * are rejected.
+ *
+ * Once created the selector never changes, so it can be shared between any amount of threads
+ * without synchronization. Entries with a weight of 0 are kept, but will never be selected.
+ *
+ * Selections can be limited to a subset of the entries without building a new selector for
+ * every roll. For filters which are reused, such as one per biome, create a
+ * {@link SelectorMask} once and select with it in constant time. For one off filters,
+ * {@link #getRandomValue(Random, Predicate)} can be used instead.
+ */
+public final class CompiledSelector<T> {
+
+    /**
+     * The amount of unfiltered rolls tried before a filtered selection falls back to a linear
+     * roll over the matching entries.
+     */
+    private static final int REJECTION_ATTEMPTS = 16;
+
+    /**
+     * The values of the entries.
+     */
+    private final Object[] values;
+
+    /**
+     * The weights of the entries, in the same order as {@link #values}.
+     */
+    private final double[] weights;
+
+    /**
+     * The probability of keeping each column in the alias table, rather than using its alias.
+     */
+    private final double[] probabilities;
+
+    /**
+     * The alias of each column in the alias table.
+     */
+    private final int[] aliases;
+
+    /**
+     * The total weight of all entries.
+     */
+    private final double total;
+
+    /**
+     * Constructs a new compiled selector. The arrays are used directly, and must not be
+     * modified afterwards.
+     *
+     * @param values The values of the entries.
+     * @param weights The weights of the entries.
+     */
+    private CompiledSelector (Object[] values, double[] weights) {
+
+        double total = 0;
+
+        for (final double weight : weights) {
+
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and not negative, got " + weight);
+            }
+
+            total += weight;
+        }
+
+        if (Double.isInfinite(total)) {
+            throw new IllegalArgumentException("The total weight must be finite, the weights are too large");
+        }
+
+        this.values = values;
+        this.weights = weights;
+        this.total = total;
+        this.probabilities = new double[values.length];
+        this.aliases = new int[values.length];
+
+        if (total > 0) {
+            this.buildAliasTable();
+        }
+    }
+
+    /**
+     * Creates a compiled selector from a list of values and their weights.
+     *
+     * @param values The values of the entries.
+     * @param weights The weights of the entries, in the same order as the values.
+     * @return The compiled selector.
+     */
+    public static <T> CompiledSelector<T> of (List<? extends T> values, double[] weights) {
+
+        if (values.size() != weights.length) {
+            throw new IllegalArgumentException("Got " + values.size() + " values but " + weights.length + " weights");
+        }
+
+        return new CompiledSelector<>(values.toArray(), weights.clone());
+    }
+
+    /**
+     * Creates a compiled selector from a list of values and their weights.
+     *
+     * @param values The values of the entries.
+     * @param weights The weights of the entries, in the same order as the values.
+     * @return The compiled selector.
+     */
+    public static <T> CompiledSelector<T> of (List<? extends T> values, long[] weights) {
+
+        final double[] converted = new double[weights.length];
+
+        for (int index = 0; index < weights.length; index++) {
+            converted[index] = weights[index];
+        }
+
+        return of(values, converted);
+    }
+
+    /**
+     * Randomly selects a value. Makes use of the weights to give values with higher weight a
+     * better likelihood. Uses the random instance of the current thread.
+     *
+     * @return The selected value, or null if there are no entries with a positive weight.
+     */
+    public T getRandomValue () {
+
+        return this.getRandomValue(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Randomly selects a value using a specific random instance.
+     *
+     * @param random The random instance to use.
+     * @return The selected value, or null if there are no entries with a positive weight.
+     */
+    @SuppressWarnings("unchecked")
+    public T getRandomValue (Random random) {
+
+        final int index = this.getRandomIndex(random);
+        return index < 0 ? null : (T) this.values[index];
+    }
+
+    /**
+     * Randomly selects a value out of the values enabled by a mask. This takes constant time
+     * and does not create any objects.
+     *
+     * @param random The random instance to use.
+     * @param mask A mask created by this selector.
+     * @return The selected value, or null if no enabled entry has a positive weight.
+     */
+    @SuppressWarnings("unchecked")
+    public T getRandomValue (Random random, SelectorMask<T> mask) {
+
+        if (mask.getOwner() != this) {
+            throw new IllegalArgumentException("The mask was created for a different selector");
+        }
+
+        final int index = mask.getRandomIndex(random);
+        return index < 0 ? null : (T) this.values[index];
+    }
+
+    /**
+     * Randomly selects a value out of the values which match a filter. A few unfiltered
+     * rolls are tried first, which is fast when most of the weight matches the filter. If
+     * those are all rejected, the matching entries are rolled over directly, which takes
+     * linear time. No objects are created either way. Filters which are used often should
+     * be turned into a {@link SelectorMask} instead.
+     *
+     * @param random The random instance to use.
+     * @param filter The filter values must match.
+     * @return The selected value, or null if no matching entry has a positive weight.
+     */
+    @SuppressWarnings("unchecked")
+    public T getRandomValue (Random random, Predicate<? super T> filter) {
+
+        for (int attempt = 0; attempt < REJECTION_ATTEMPTS; attempt++) {
+
+            final int index = this.getRandomIndex(random);
+
+            if (index < 0) {
+                return null;
+            }
+
+            if (filter.test((T) this.values[index])) {
+                return (T) this.values[index];
+            }
+        }
+
+        double enabledTotal = 0;
+
+        for (int index = 0; index < this.values.length; index++) {
+            if (this.weights[index] > 0 && filter.test((T) this.values[index])) {
+                enabledTotal += this.weights[index];
+            }
+        }
+
+        double roll = random.nextDouble() * enabledTotal;
+        int last = -1;
+
+        for (int index = 0; index < this.values.length; index++) {
+
+            if (this.weights[index] > 0 && filter.test((T) this.values[index])) {
+
+                last = index;
+                roll -= this.weights[index];
+
+                if (roll < 0) {
+                    return (T) this.values[index];
+                }
+            }
+        }
+
+        // Rounding can leave a tiny amount of roll, which belongs to the last match.
+        return last < 0 ? null : (T) this.values[last];
+    }
+
+    /**
+     * Creates a mask of the entries whose values match a filter.
+     *
+     * @param filter The filter values must match to be enabled.
+     * @return A mask of the matching entries.
+     */
+    @SuppressWarnings("unchecked")
+    public SelectorMask<T> createMask (Predicate<? super T> filter) {
+
+        final BitSet enabled = new BitSet(this.values.length);
+
+        for (int index = 0; index < this.values.length; index++) {
+            if (filter.test((T) this.values[index])) {
+                enabled.set(index);
+            }
+        }
+
+        return this.createMask(enabled);
+    }
+
+    /**
+     * Creates a mask from a set of enabled entry indexes.
+     *
+     * @param enabled The indexes of the enabled entries. Bits past the last entry are
+     *        ignored.
+     * @return A mask of the enabled entries.
+     */
+    public SelectorMask<T> createMask (BitSet enabled) {
+
+        final BitSet bits = enabled.get(0, this.values.length);
+        final int[] indexes = new int[bits.cardinality()];
+        final List<Object> values = new ArrayList<>(indexes.length);
+        final double[] weights = new double[indexes.length];
+        int position = 0;
+
+        for (int index = bits.nextSetBit(0); index >= 0; index = bits.nextSetBit(index + 1)) {
+
+            indexes[position] = index;
+            values.add(this.values[index]);
+            weights[position++] = this.weights[index];
+        }
+
+        return new SelectorMask<>(this, bits, indexes, new CompiledSelector<>(values.toArray(), weights));
+    }
+
+    /**
+     * Randomly selects the index of an entry using a specific random instance. Only a single
+     * random double is used per selection.
+     *
+     * @param random The random instance to use.
+     * @return The index of the selected entry, or -1 if there are no entries with a positive
+     *         weight.
+     */
+    public int getRandomIndex (Random random) {
+
+        if (this.total <= 0) {
+            return -1;
+        }
+
+        final double roll = random.nextDouble() * this.values.length;
+        final int column = Math.min((int) roll, this.values.length - 1);
+        return roll - column < this.probabilities[column] ? column : this.aliases[column];
+    }
+
+    /**
+     * Gets the amount of entries in the selector.
+     *
+     * @return The amount of entries.
+     */
+    public int size () {
+
+        return this.values.length;
+    }
+
+    /**
+     * Gets the value of an entry.
+     *
+     * @param index The index of the entry.
+     * @return The value of the entry.
+     */
+    @SuppressWarnings("unchecked")
+    public T getValue (int index) {
+
+        return (T) this.values[index];
+    }
+
+    /**
+     * Gets the weight of an entry.
+     *
+     * @param index The index of the entry.
+     * @return The weight of the entry.
+     */
+    public double getWeight (int index) {
+
+        return this.weights[index];
+    }
+
+    /**
+     * Gets the total weight of all entries.
+     *
+     * @return The total weight.
+     */
+    public double getTotalWeight () {
+
+        return this.total;
+    }
+
+    /**
+     * Builds the alias table using Vose's method. Each column is split between its own entry
+     * and one alias, so that every column holds an equal share of the total weight.
+     */
+    private void buildAliasTable () {
+
+        final int size = this.values.length;
+        final double[] scaled = new double[size];
+        final int[] small = new int[size];
+        final int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int index = 0; index < size; index++) {
+
+            // Dividing first keeps large weights from overflowing when multiplied by the size.
+            scaled[index] = this.weights[index] / this.total * size;
+
+            if (scaled[index] < 1) {
+                small[smallCount++] = index;
+            }
+
+            else {
+                large[largeCount++] = index;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+
+            final int less = small[--smallCount];
+            final int more = large[--largeCount];
+
+            this.probabilities[less] = scaled[less];
+            this.aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            }
+
+            else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Anything left over is only off due to rounding, so it keeps its full column.
+        while (largeCount > 0) {
+
+            final int index = large[--largeCount];
+            this.probabilities[index] = 1;
+            this.aliases[index] = index;
+        }
+
+        while (smallCount > 0) {
+
+            final int index = small[--smallCount];
+
+            if (this.weights[index] > 0) {
+
+                this.probabilities[index] = 1;
+                this.aliases[index] = index;
+            }
+
+            else {
+
+                // Zero weight entries must never be kept, so they alias to any positive entry.
+                this.probabilities[index] = 0;
+                this.aliases[index] = this.findPositiveEntry();
+            }
+        }
+    }
+
+    /**
+     * Finds the first entry with a positive weight.
+     *
+     * @return The index of the first positive entry.
+     */
+    private int findPositiveEntry () {
+
+        for (int index = 0; index < this.weights.length; index++) {
+            if (this.weights[index] > 0) {
+                return index;
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,260 @@
+package org.epoxide.commons.rand;
+
+import java.util.Random;
+
+/**
+ * A counter based random number generator. Every value is computed directly from the seed and
+ * a counter using SplitMix64 style mixing, rather than from the previous value. This means
+ * any value in the sequence can be looked up in constant time, and values for positions such
+ * as (x, y, z) can be generated in any order, on any thread, without sharing state. This is
+ * useful for things like world generation, where chunks may be generated out of order.
+ *
+ * The class also extends Random so it can be passed to existing code, such as
+ * {@link org.epoxide.commons.registry.NamedRegistry#getRandomValue(Random)} or
+ * {@link CompiledSelector#getRandomValue(Random)}. When used this way the generator walks its
+ * counter forward one step per value. Use {@link #forPosition(int, int, int)} to get a
+ * Random for a specific position. Like Random itself, an instance should not be shared
+ * between threads when used as a sequence, while the lookup methods are always thread safe.
+ * A lookup which runs while the generator is reseeded may use either the old or the new
+ * seed.
+ */
+public final class CounterRandom extends Random {
+
+    /**
+     * The version identifier used for serialization.
+     */
+    private static final long serialVersionUID = -2474358101938125421L;
+
+    /**
+     * The 64 bit golden ratio, used as the SplitMix64 increment.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Multipliers used to combine coordinates into a counter.
+     */
+    private static final long X_FACTOR = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Multipliers used to combine coordinates into a counter.
+     */
+    private static final long Y_FACTOR = 0x165667B19E3779F9L;
+
+    /**
+     * Multipliers used to combine coordinates into a counter.
+     */
+    private static final long Z_FACTOR = 0x27D4EB2F165667C5L;
+
+    /**
+     * The key derived from the seed. Every value is a function of this and a counter. This is
+     * volatile so the lookup methods always see a whole key, even while another thread calls
+     * {@link #setSeed(long)}.
+     */
+    private volatile long key;
+
+    /**
+     * The counter used when the generator is used as a sequence.
+     */
+    private long counter;
+
+    /**
+     * Constructs a new generator with the counter starting at 0.
+     *
+     * @param seed The seed for the generator.
+     */
+    public CounterRandom (long seed) {
+
+        this(seed, 0);
+    }
+
+    /**
+     * Constructs a new generator with the counter starting at a specific position.
+     *
+     * @param seed The seed for the generator.
+     * @param counter The initial counter, used when the generator is used as a sequence.
+     */
+    public CounterRandom (long seed, long counter) {
+
+        super(seed);
+        this.key = mix(seed);
+        this.counter = counter;
+    }
+
+    /**
+     * Gets the value at a position in the sequence for a seed. This does not require an
+     * instance, and always returns the same value for the same arguments.
+     *
+     * @param seed The seed.
+     * @param counter The position in the sequence.
+     * @return The random value at the position.
+     */
+    public static long valueAt (long seed, long counter) {
+
+        return mix(mix(seed) + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Gets the value at a position in the sequence of this generator. This does not change
+     * the state of the generator.
+     *
+     * @param counter The position in the sequence.
+     * @return The random value at the position.
+     */
+    public long nextAt (long counter) {
+
+        return mix(this.key + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Gets the value for a coordinate. This does not change the state of the generator.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The random value for the coordinate.
+     */
+    public long valueAt (int x, int y, int z) {
+
+        return this.nextAt(toCounter(x, y, z));
+    }
+
+    /**
+     * Gets a double between 0 (inclusive) and 1 (exclusive) for a coordinate.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The random double for the coordinate.
+     */
+    public double doubleAt (int x, int y, int z) {
+
+        return (this.valueAt(x, y, z) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Creates a new generator whose sequence is unique to a coordinate. This can be passed to
+     * code which expects a Random, and will give the same results for the same coordinate
+     * every time.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return A new generator for the coordinate.
+     */
+    public CounterRandom forPosition (int x, int y, int z) {
+
+        final CounterRandom random = new CounterRandom(0);
+        random.key = mix(this.valueAt(x, y, z));
+        return random;
+    }
+
+    /**
+     * Fills an array with the values at a range of counters.
+     *
+     * @param out The array to fill.
+     * @param start The counter for the first value.
+     */
+    public void fill (long[] out, long start) {
+
+        for (int index = 0; index < out.length; index++) {
+            out[index] = this.nextAt(start + index);
+        }
+    }
+
+    /**
+     * Fills an array with the values for a box of coordinates. The x coordinate changes
+     * fastest, followed by z and then y, so the value for (x, y, z) is found at
+     * {@code ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)}.
+     *
+     * @param out The array to fill. Must hold at least sizeX * sizeY * sizeZ values.
+     * @param minX The lowest x coordinate.
+     * @param minY The lowest y coordinate.
+     * @param minZ The lowest z coordinate.
+     * @param sizeX The amount of x coordinates.
+     * @param sizeY The amount of y coordinates.
+     * @param sizeZ The amount of z coordinates.
+     */
+    public void fill (long[] out, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+
+        int index = 0;
+
+        for (int y = 0; y < sizeY; y++) {
+
+            for (int z = 0; z < sizeZ; z++) {
+
+                final long base = (minY + y) * Y_FACTOR + (minZ + z) * Z_FACTOR;
+
+                for (int x = 0; x < sizeX; x++) {
+                    out[index++] = this.nextAt(base + (minX + x) * X_FACTOR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the current counter of the sequence.
+     *
+     * @return The counter for the next value of the sequence.
+     */
+    public long getCounter () {
+
+        return this.counter;
+    }
+
+    /**
+     * Moves the sequence to a specific counter.
+     *
+     * @param counter The counter for the next value of the sequence.
+     */
+    public void setCounter (long counter) {
+
+        this.counter = counter;
+    }
+
+    @Override
+    public void setSeed (long seed) {
+
+        // Called by the Random constructor before the fields of this class are set up.
+        super.setSeed(seed);
+        this.key = mix(seed);
+        this.counter = 0;
+    }
+
+    @Override
+    public long nextLong () {
+
+        return this.nextAt(this.counter++);
+    }
+
+    @Override
+    protected int next (int bits) {
+
+        return (int) (this.nextAt(this.counter++) >>> 64 - bits);
+    }
+
+    /**
+     * Combines a coordinate into a single counter.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The counter for the coordinate.
+     */
+    private static long toCounter (int x, int y, int z) {
+
+        return x * X_FACTOR + y * Y_FACTOR + z * Z_FACTOR;
+    }
+
+    /**
+     * The SplitMix64 output function. Scrambles all bits of the input.
+     *
+     * @param x The value to mix.
+     * @return The mixed value.
+     */
+    private static long mix (long x) {
+
+        x = (x ^ x >>> 30) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ x >>> 27) * 0x94D049BB133111EBL;
+        return x ^ x >>> 31;
+    }
+}
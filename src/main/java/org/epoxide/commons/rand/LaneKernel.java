@@ -0,0 +1,25 @@
+package org.epoxide.commons.rand;
+
+/**
+ * Advances the lanes of a {@link MultiLaneXoshiro} several steps at a time. This is used to
+ * plug in an implementation built on the Vector API, which is compiled separately as it needs
+ * Java 16 or later. The lanes which a kernel does not handle are advanced by the scalar loop
+ * in {@link MultiLaneXoshiro}.
+ */
+interface LaneKernel {
+
+    /**
+     * Advances the first lanes by a number of steps. The output of each step is written to
+     * the array one lane after another, in the same order as {@link MultiLaneXoshiro}.
+     *
+     * @param s0 The first state word of each lane.
+     * @param s1 The second state word of each lane.
+     * @param s2 The third state word of each lane.
+     * @param s3 The fourth state word of each lane.
+     * @param out The array to write the output to.
+     * @param from The index of the output of lane 0 for the first step.
+     * @param steps The amount of steps to advance.
+     * @return The amount of lanes which were advanced, starting from lane 0.
+     */
+    int fill (long[] s0, long[] s1, long[] s2, long[] s3, long[] out, int from, int steps);
+}
@@ -0,0 +1,304 @@
+package org.epoxide.commons.rand;
+
+import org.epoxide.commons.EpoxideCommons;
+
+/**
+ * A generator for filling large arrays with random numbers. It runs several independent
+ * xoshiro256++ generators, called lanes, in lockstep. The state of each lane is stored in
+ * separate primitive arrays, so every step is the same shift, xor and add applied across all
+ * lanes at once. The lanes do not depend on each other, so the steps of different lanes can
+ * overlap, unlike a single generator like {@link XorShiftRandom} where each number depends
+ * on the last.
+ *
+ * On Java 16 and later with the jdk.incubator.vector module added, the lanes are advanced
+ * using the Vector API by {@code VectorLaneKernel}, which is included in the jar as a multi
+ * release entry. Otherwise, or for lanes which do not fill a whole vector, a scalar loop is
+ * used. Both produce exactly the same output.
+ *
+ * Output is interleaved between the lanes, and is fully determined by the seed and the lane
+ * count. The values produced do not depend on how the output is split between calls, so
+ * filling one array of 1000 values gives the same values as filling two arrays of 500. The
+ * generator is not thread safe.
+ */
+public final class MultiLaneXoshiro {
+
+    /**
+     * The default amount of lanes.
+     */
+    public static final int DEFAULT_LANES = 8;
+
+    /**
+     * The size of the scratch buffer used when converting output to other types.
+     */
+    private static final int SCRATCH_SIZE = 1024;
+
+    /**
+     * The Vector API kernel, or null if it is not available.
+     */
+    private static final LaneKernel VECTOR_KERNEL = findVectorKernel();
+
+    /**
+     * The amount of lanes.
+     */
+    private final int lanes;
+
+    /**
+     * The first state word of each lane.
+     */
+    private final long[] s0;
+
+    /**
+     * The second state word of each lane.
+     */
+    private final long[] s1;
+
+    /**
+     * The third state word of each lane.
+     */
+    private final long[] s2;
+
+    /**
+     * The fourth state word of each lane.
+     */
+    private final long[] s3;
+
+    /**
+     * Output from the last step which has not been handed out yet. Used when a fill does not
+     * end on a step boundary.
+     */
+    private final long[] pending;
+
+    /**
+     * The index of the next unused value in {@link #pending}. Equal to the lane count when
+     * there is nothing pending.
+     */
+    private int pendingIndex;
+
+    /**
+     * A buffer used when converting output to ints or doubles. Created when first needed.
+     */
+    private long[] scratch;
+
+    /**
+     * Constructs a new generator with the default amount of lanes.
+     *
+     * @param seed The seed for the generator.
+     */
+    public MultiLaneXoshiro (long seed) {
+
+        this(seed, DEFAULT_LANES);
+    }
+
+    /**
+     * Constructs a new generator. The state of every lane is seeded from a SplitMix64
+     * sequence started at the seed, so the lanes are unrelated to each other.
+     *
+     * @param seed The seed for the generator.
+     * @param lanes The amount of lanes to run. Must be at least 1.
+     */
+    public MultiLaneXoshiro (long seed, int lanes) {
+
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Lane count must be at least 1, got " + lanes);
+        }
+
+        this.lanes = lanes;
+        this.s0 = new long[lanes];
+        this.s1 = new long[lanes];
+        this.s2 = new long[lanes];
+        this.s3 = new long[lanes];
+        this.pending = new long[lanes];
+        this.pendingIndex = lanes;
+
+        long mix = seed;
+
+        for (int lane = 0; lane < lanes; lane++) {
+
+            this.s0[lane] = splitMix(mix += 0x9E3779B97F4A7C15L);
+            this.s1[lane] = splitMix(mix += 0x9E3779B97F4A7C15L);
+            this.s2[lane] = splitMix(mix += 0x9E3779B97F4A7C15L);
+            this.s3[lane] = splitMix(mix += 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * Gets the amount of lanes used by the generator.
+     *
+     * @return The amount of lanes.
+     */
+    public int getLanes () {
+
+        return this.lanes;
+    }
+
+    /**
+     * Fills an array with random longs.
+     *
+     * @param out The array to fill.
+     */
+    public void fill (long[] out) {
+
+        this.fill(out, 0, out.length);
+    }
+
+    /**
+     * Fills part of an array with random longs.
+     *
+     * @param out The array to fill.
+     * @param from The first index to fill, inclusive.
+     * @param to The last index to fill, exclusive.
+     */
+    public void fill (long[] out, int from, int to) {
+
+        int index = from;
+
+        while (index < to && this.pendingIndex < this.lanes) {
+            out[index++] = this.pending[this.pendingIndex++];
+        }
+
+        final int lanes = this.lanes;
+        final long[] s0 = this.s0;
+        final long[] s1 = this.s1;
+        final long[] s2 = this.s2;
+        final long[] s3 = this.s3;
+        final int steps = (to - index) / lanes;
+        final int first = VECTOR_KERNEL != null && steps > 0 ? VECTOR_KERNEL.fill(s0, s1, s2, s3, out, index, steps) : 0;
+
+        for (final int end = index + steps * lanes; index < end; index += lanes) {
+
+            // The lanes are independent, so no iteration waits on the one before it.
+            for (int lane = first; lane < lanes; lane++) {
+
+                final long a = s0[lane];
+                final long b = s1[lane];
+                final long c = s2[lane] ^ a;
+                final long d = s3[lane] ^ b;
+                out[index + lane] = Long.rotateLeft(a + s3[lane], 23) + a;
+                s0[lane] = a ^ d;
+                s1[lane] = b ^ c;
+                s2[lane] = c ^ b << 17;
+                s3[lane] = Long.rotateLeft(d, 45);
+            }
+        }
+
+        if (index < to) {
+
+            this.step(this.pending);
+            this.pendingIndex = 0;
+
+            while (index < to) {
+                out[index++] = this.pending[this.pendingIndex++];
+            }
+        }
+    }
+
+    /**
+     * Fills an array with random ints. Each int is taken from the upper bits of a long.
+     *
+     * @param out The array to fill.
+     */
+    public void fill (int[] out) {
+
+        final long[] scratch = this.getScratch();
+
+        for (int offset = 0; offset < out.length; offset += SCRATCH_SIZE) {
+
+            final int count = Math.min(SCRATCH_SIZE, out.length - offset);
+            this.fill(scratch, 0, count);
+
+            for (int index = 0; index < count; index++) {
+                out[offset + index] = (int) (scratch[index] >>> 32);
+            }
+        }
+    }
+
+    /**
+     * Fills an array with random doubles between 0 (inclusive) and 1 (exclusive). Each double
+     * uses the upper 53 bits of a long.
+     *
+     * @param out The array to fill.
+     */
+    public void fill (double[] out) {
+
+        final long[] scratch = this.getScratch();
+
+        for (int offset = 0; offset < out.length; offset += SCRATCH_SIZE) {
+
+            final int count = Math.min(SCRATCH_SIZE, out.length - offset);
+            this.fill(scratch, 0, count);
+
+            for (int index = 0; index < count; index++) {
+                out[offset + index] = (scratch[index] >>> 11) * 0x1.0p-53;
+            }
+        }
+    }
+
+    /**
+     * Advances every lane by one step, writing the output of each lane to an array.
+     *
+     * @param out The array to write to. Must hold at least one value per lane.
+     */
+    private void step (long[] out) {
+
+        for (int lane = 0; lane < this.lanes; lane++) {
+
+            final long a = this.s0[lane];
+            final long b = this.s1[lane];
+            final long c = this.s2[lane] ^ a;
+            final long d = this.s3[lane] ^ b;
+            out[lane] = Long.rotateLeft(a + this.s3[lane], 23) + a;
+            this.s0[lane] = a ^ d;
+            this.s1[lane] = b ^ c;
+            this.s2[lane] = c ^ b << 17;
+            this.s3[lane] = Long.rotateLeft(d, 45);
+        }
+    }
+
+    /**
+     * Gets the scratch buffer, creating it if needed.
+     *
+     * @return The scratch buffer.
+     */
+    private long[] getScratch () {
+
+        if (this.scratch == null) {
+            this.scratch = new long[SCRATCH_SIZE];
+        }
+
+        return this.scratch;
+    }
+
+    /**
+     * Loads the Vector API kernel. The class is only present in the multi release part of the
+     * jar, and needs the jdk.incubator.vector module, so this fails quietly when either is
+     * missing.
+     *
+     * @return The Vector API kernel, or null if it can not be used.
+     */
+    private static LaneKernel findVectorKernel () {
+
+        try {
+
+            return Class.forName("org.epoxide.commons.rand.VectorLaneKernel").asSubclass(LaneKernel.class).getDeclaredConstructor().newInstance();
+        }
+
+        catch (final ReflectiveOperationException | LinkageError | RuntimeException e) {
+
+            EpoxideCommons.getLazyLogger().fine( () -> "The Vector API is not available, lanes will be advanced with a scalar loop. " + e);
+            return null;
+        }
+    }
+
+    /**
+     * The output function of SplitMix64, used to seed the lanes.
+     *
+     * @param x The value to mix.
+     * @return The mixed value.
+     */
+    private static long splitMix (long x) {
+
+        x = (x ^ x >>> 30) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ x >>> 27) * 0x94D049BB133111EBL;
+        return x ^ x >>> 31;
+    }
+}
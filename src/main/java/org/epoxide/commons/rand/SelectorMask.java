@@ -0,0 +1,108 @@
+package org.epoxide.commons.rand;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * A precomputed set of enabled entries for a {@link CompiledSelector}. Masks are intended for
+ * situations where the same filter is used many times, such as one mask per biome or
+ * difficulty. The mask holds its own alias table over the enabled entries, so selecting from
+ * a mask takes constant time and does not create any objects.
+ *
+ * Masks are created using {@link CompiledSelector#createMask(Predicate)}
+ * or {@link CompiledSelector#createMask(BitSet)}, and can only be used with the selector
+ * which created them. Like the selector itself, masks are immutable and thread safe.
+ */
+public final class SelectorMask<T> {
+
+    /**
+     * The selector this mask was created for.
+     */
+    private final CompiledSelector<T> owner;
+
+    /**
+     * The enabled entries of the owner.
+     */
+    private final BitSet enabled;
+
+    /**
+     * The indexes of the enabled entries in the owner, in order.
+     */
+    private final int[] indexes;
+
+    /**
+     * A selector over only the enabled entries.
+     */
+    private final CompiledSelector<T> selector;
+
+    /**
+     * Constructs a new mask. Only used by {@link CompiledSelector}.
+     *
+     * @param owner The selector the mask is for.
+     * @param enabled The enabled entries. This is copied.
+     * @param indexes The indexes of the enabled entries.
+     * @param selector A selector over only the enabled entries.
+     */
+    SelectorMask (CompiledSelector<T> owner, BitSet enabled, int[] indexes, CompiledSelector<T> selector) {
+
+        this.owner = owner;
+        this.enabled = (BitSet) enabled.clone();
+        this.indexes = indexes;
+        this.selector = selector;
+    }
+
+    /**
+     * Checks if an entry is enabled by this mask.
+     *
+     * @param index The index of the entry in the selector.
+     * @return Whether or not the entry is enabled.
+     */
+    public boolean isEnabled (int index) {
+
+        return this.enabled.get(index);
+    }
+
+    /**
+     * Gets the amount of entries enabled by this mask.
+     *
+     * @return The amount of enabled entries.
+     */
+    public int getEnabledCount () {
+
+        return this.indexes.length;
+    }
+
+    /**
+     * Gets the total weight of the enabled entries.
+     *
+     * @return The total enabled weight.
+     */
+    public double getTotalWeight () {
+
+        return this.selector.getTotalWeight();
+    }
+
+    /**
+     * Gets the selector this mask was created for.
+     *
+     * @return The owning selector.
+     */
+    public CompiledSelector<T> getOwner () {
+
+        return this.owner;
+    }
+
+    /**
+     * Randomly selects the index of an enabled entry in the owning selector.
+     *
+     * @param random The random instance to use.
+     * @return The index of the selected entry, or -1 if no enabled entry has a positive
+     *         weight.
+     */
+    int getRandomIndex (Random random) {
+
+        final int index = this.selector.getRandomIndex(random);
+        return index < 0 ? -1 : this.indexes[index];
+    }
+}
@@ -0,0 +1,303 @@
+package org.epoxide.commons.rand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+
+/**
+ * Selects k entries from a stream of weighted candidates, without needing to hold all of the
+ * candidates at once. This uses the A-ExpJ algorithm by Efraimidis and Spirakis. Every
+ * candidate is given a random key based on its weight, and the k candidates with the highest
+ * keys are kept. Rather than rolling a key for every candidate, the algorithm rolls how much
+ * weight can be skipped before the next candidate enters the reservoir, so only a small
+ * amount of random numbers are needed for long streams.
+ *
+ * Keys are independent of the order candidates are seen in, so partial reservoirs built from
+ * different parts of a stream can be merged. This allows the reservoir to be used as a
+ * {@link Collector} for parallel streams, see {@link #collector(int, ToDoubleFunction)}.
+ */
+public class WeightedReservoir<T> {
+
+    /**
+     * Used to create well spread seeds for the random instances of collector reservoirs.
+     */
+    private static final AtomicLong SEEDS = new AtomicLong(System.nanoTime());
+
+    /**
+     * The maximum amount of entries to keep.
+     */
+    private final int capacity;
+
+    /**
+     * The random instance used to roll keys.
+     */
+    private final Random random;
+
+    /**
+     * The log of the key of each entry in the reservoir, stored as a min heap. Logs are used
+     * to keep small weights from rounding down to a key of 0.
+     */
+    private final double[] keys;
+
+    /**
+     * The entries in the reservoir, in the same order as {@link #keys}.
+     */
+    private final Object[] entries;
+
+    /**
+     * The amount of entries in the reservoir.
+     */
+    private int size;
+
+    /**
+     * The amount of weight left to skip before the next entry is added to a full reservoir.
+     */
+    private double skip;
+
+    /**
+     * Constructs a new reservoir using a new {@link XorShiftRandom}.
+     *
+     * @param capacity The amount of entries to select.
+     */
+    public WeightedReservoir (int capacity) {
+
+        this(capacity, new XorShiftRandom(nextSeed()));
+    }
+
+    /**
+     * Constructs a new reservoir.
+     *
+     * @param capacity The amount of entries to select.
+     * @param random The random instance used to roll keys.
+     */
+    public WeightedReservoir (int capacity, Random random) {
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.random = random;
+        this.keys = new double[capacity];
+        this.entries = new Object[capacity];
+    }
+
+    /**
+     * Offers a candidate to the reservoir. Candidates with a weight of 0 or less are never
+     * selected.
+     *
+     * @param entry The candidate.
+     * @param weight The weight of the candidate.
+     */
+    public void offer (T entry, double weight) {
+
+        if (Double.isNaN(weight) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be finite, got " + weight);
+        }
+
+        if (weight <= 0) {
+            return;
+        }
+
+        if (this.size < this.capacity) {
+
+            this.push(Math.log(this.nextOpenDouble()) / weight, entry);
+
+            if (this.size == this.capacity) {
+                this.rollSkip();
+            }
+
+            return;
+        }
+
+        this.skip -= weight;
+
+        if (this.skip <= 0) {
+
+            // The new key is rolled between the current minimum and 1, so the entry always
+            // replaces the minimum.
+            final double threshold = Math.exp(weight * this.keys[0]);
+            final double roll = threshold + (1 - threshold) * this.nextOpenDouble();
+            this.replaceMin(Math.log(roll) / weight, entry);
+            this.rollSkip();
+        }
+    }
+
+    /**
+     * Merges the entries of another reservoir into this one. Only the entries with the highest
+     * keys out of both reservoirs are kept. The other reservoir is not modified.
+     *
+     * @param other The reservoir to merge.
+     * @return This reservoir, for convenience.
+     */
+    @SuppressWarnings("unchecked")
+    public WeightedReservoir<T> merge (WeightedReservoir<T> other) {
+
+        for (int index = 0; index < other.size; index++) {
+
+            final double key = other.keys[index];
+
+            if (this.size < this.capacity) {
+
+                this.push(key, (T) other.entries[index]);
+            }
+
+            else if (key > this.keys[0]) {
+
+                this.replaceMin(key, (T) other.entries[index]);
+            }
+        }
+
+        if (this.size == this.capacity) {
+            this.rollSkip();
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the entries which have been selected. If fewer candidates with a positive weight
+     * were offered than the capacity, all of them are returned. The order is not defined.
+     *
+     * @return A new list of the selected entries.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> getSamples () {
+
+        final List<T> samples = new ArrayList<>(this.size);
+
+        for (int index = 0; index < this.size; index++) {
+            samples.add((T) this.entries[index]);
+        }
+
+        return samples;
+    }
+
+    /**
+     * Gets the amount of entries currently in the reservoir.
+     *
+     * @return The amount of selected entries.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Creates a collector which selects k entries from a stream using their weights. Each
+     * part of a parallel stream is sampled into its own reservoir, which are then merged.
+     *
+     * @param capacity The amount of entries to select.
+     * @param weight A function which gets the weight of an entry.
+     * @return A collector which selects weighted entries from a stream.
+     */
+    public static <T> Collector<T, WeightedReservoir<T>, List<T>> collector (int capacity, ToDoubleFunction<? super T> weight) {
+
+        // Keys do not depend on the order entries are seen in, so the collector is unordered.
+        return Collector.of( () -> new WeightedReservoir<>(capacity), (reservoir, entry) -> reservoir.offer(entry, weight.applyAsDouble(entry)), WeightedReservoir::merge, WeightedReservoir::getSamples, Characteristics.UNORDERED);
+    }
+
+    /**
+     * Rolls the amount of weight to skip before the next entry replaces the minimum.
+     */
+    private void rollSkip () {
+
+        this.skip = Math.log(this.nextOpenDouble()) / this.keys[0];
+    }
+
+    /**
+     * Gets a random double which is greater than 0 and less than 1.
+     *
+     * @return A random double in the open range (0, 1).
+     */
+    private double nextOpenDouble () {
+
+        double value;
+
+        do {
+            value = this.random.nextDouble();
+        }
+        while (value == 0);
+
+        return value;
+    }
+
+    /**
+     * Adds an entry to the heap. The heap must not be full.
+     *
+     * @param key The log key of the entry.
+     * @param entry The entry to add.
+     */
+    private void push (double key, T entry) {
+
+        int index = this.size++;
+
+        while (index > 0) {
+
+            final int parent = index - 1 >>> 1;
+
+            if (this.keys[parent] <= key) {
+                break;
+            }
+
+            this.keys[index] = this.keys[parent];
+            this.entries[index] = this.entries[parent];
+            index = parent;
+        }
+
+        this.keys[index] = key;
+        this.entries[index] = entry;
+    }
+
+    /**
+     * Replaces the entry with the lowest key in the heap.
+     *
+     * @param key The log key of the new entry.
+     * @param entry The new entry.
+     */
+    private void replaceMin (double key, T entry) {
+
+        int index = 0;
+
+        while (true) {
+
+            final int left = index * 2 + 1;
+
+            if (left >= this.size) {
+                break;
+            }
+
+            final int right = left + 1;
+            final int child = right < this.size && this.keys[right] < this.keys[left] ? right : left;
+
+            if (this.keys[child] >= key) {
+                break;
+            }
+
+            this.keys[index] = this.keys[child];
+            this.entries[index] = this.entries[child];
+            index = child;
+        }
+
+        this.keys[index] = key;
+        this.entries[index] = entry;
+    }
+
+    /**
+     * Creates a new seed for a reservoir random, using the SplitMix64 sequence so that
+     * reservoirs created at the same time still get unrelated seeds.
+     *
+     * @return A new seed.
+     */
+    private static long nextSeed () {
+
+        long seed = SEEDS.addAndGet(0x9E3779B97F4A7C15L);
+        seed = (seed ^ seed >>> 30) * 0xBF58476D1CE4E5B9L;
+        seed = (seed ^ seed >>> 27) * 0x94D049BB133111EBL;
+        return seed ^ seed >>> 31;
+    }
+}
@@ -1,11 +1,21 @@
 package org.epoxide.commons.rand;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.RandomAccess;
+
+import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.collections.Footprint;
+import org.epoxide.commons.metrics.Counter;
 
 /**
  * Provides a re-usable system for handling weighted randomization.
+ *
+ * Selecting entries does not change the selector, so a selector can be shared between threads
+ * once its entries have been set up. Adding, removing or replacing entries while other
+ * threads are selecting is not safe.
  */
 public class WeightedSelector<T> {
 
@@ -14,16 +24,35 @@ public class WeightedSelector<T> {
      */
     private static final Random RANDOM = new XorShiftRandom();
 
+    /**
+     * Counts the draws made across all weighted selectors.
+     */
+    private static final Counter DRAWS = EpoxideCommons.getMetrics().counter("selector.draws");
+
     /**
      * The list of entries held by the selector.
      */
-    private final List<WeightedEntry<T>> entries = new ArrayList<>();
+    private final ArrayList<WeightedEntry<T>> entries = new ArrayList<>();
+
+    /**
+     * A view of {@link #entries} returned by {@link #getEntries()}, which clears the cached
+     * weight tree whenever the list is changed.
+     */
+    private final List<WeightedEntry<T>> entryView = new EntryList();
 
     /**
      * The total weight of all entries.
      */
     private int total = 0;
 
+    /**
+     * A Fenwick tree of the entry weights, used by {@link #sampleDistinct(int)}. Built when
+     * first needed, and cleared whenever the entries change. The cached tree is never
+     * modified once built, so several threads can sample from it at once. This is volatile so
+     * a tree built by one thread is fully visible to the others.
+     */
+    private volatile long[] weightTree;
+
     /**
      * Adds an entry to the entry list. If the entry is added successfully, the total will
      * automatically update.
@@ -50,6 +79,7 @@ public class WeightedSelector<T> {
 
         if (added) {
             this.total += entry.getWeight();
+            this.weightTree = null;
         }
 
         return added;
@@ -66,7 +96,7 @@ public class WeightedSelector<T> {
 
         for (final WeightedEntry<T> currentEntry : this.entries) {
             if (currentEntry.entry.equals(entry)) {
-                return this.entries.remove(currentEntry);
+                return this.removeEntry(currentEntry);
             }
         }
         
@@ -86,6 +116,7 @@ public class WeightedSelector<T> {
 
         if (removed) {
             this.total -= entry.getWeight();
+            this.weightTree = null;
         }
 
         return removed;
@@ -100,7 +131,30 @@ public class WeightedSelector<T> {
      */
     public List<WeightedEntry<T>> getEntries () {
 
-        return this.entries;
+        return this.entryView;
+    }
+
+    /**
+     * Estimates the amount of heap memory used by the selector, not including the values of
+     * the entries. See {@link Footprint}.
+     *
+     * @return The estimated size of the selector in bytes.
+     */
+    public long estimateFootprint () {
+
+        long size = Footprint.object(3 * Footprint.REFERENCE + 4) + Footprint.object(Footprint.REFERENCE) + Footprint.arrayList(this.entries.size());
+        size += this.entries.size() * Footprint.object(Footprint.REFERENCE + 4);
+        return size + (this.weightTree != null ? Footprint.array(this.weightTree.length, 8) : 0);
+    }
+
+    /**
+     * Shrinks the entry list to its current size, and drops the cached weight tree used by
+     * {@link #sampleDistinct(int)}. The tree will be rebuilt if it is needed again.
+     */
+    public void trimToSize () {
+
+        this.entries.trimToSize();
+        this.weightTree = null;
     }
 
     /**
@@ -111,7 +165,23 @@ public class WeightedSelector<T> {
      */
     public WeightedEntry<T> getRandomEntry () {
 
-        final int selected = RANDOM.nextInt(this.total);
+        return this.getRandomEntry(RANDOM);
+    }
+
+    /**
+     * Randomly selects an entry from the list, using a specific random instance. See
+     * {@link #getRandomEntry()}.
+     *
+     * @param random The random instance to use.
+     * @return The weighted entry that was selected.
+     */
+    public WeightedEntry<T> getRandomEntry (Random random) {
+
+        if (EpoxideCommons.isTrackingMetrics()) {
+            DRAWS.increment();
+        }
+
+        final int selected = random.nextInt(this.total);
         int current = 0;
 
         for (final WeightedEntry<T> entry : this.entries) {
@@ -126,6 +196,86 @@ public class WeightedSelector<T> {
         return null;
     }
 
+    /**
+     * Creates an immutable copy of the selector which can be shared between threads. The
+     * copy stores its entries in primitive arrays, and selects entries in constant time. See
+     * {@link CompiledSelector}.
+     *
+     * @return An immutable copy of the selector.
+     * @throws IllegalArgumentException If any of the entries have a negative weight.
+     */
+    public CompiledSelector<T> compile () {
+
+        final List<T> values = new ArrayList<>(this.entries.size());
+        final double[] weights = new double[this.entries.size()];
+
+        for (int index = 0; index < weights.length; index++) {
+
+            final WeightedEntry<T> entry = this.entries.get(index);
+            values.add(entry.getEntry());
+            weights[index] = entry.getWeight();
+        }
+
+        return CompiledSelector.of(values, weights);
+    }
+
+    /**
+     * Randomly selects several distinct entries from the list. Entries with a higher weight
+     * are more likely to be selected, and each entry can only be selected once. This is done
+     * by removing entries from a copy of a cached tree of weights as they are selected. The
+     * copy is a single array copy, and each selection takes O(log n) time. Like
+     * {@link #getRandomEntry()}, this can be called from several threads at once as long as
+     * the entries are not being changed.
+     *
+     * @param count The amount of entries to select.
+     * @return A list of the selected entries, in the order they were selected. If there are
+     *         fewer entries with a positive weight than requested, all of them are returned.
+     */
+    public List<WeightedEntry<T>> sampleDistinct (int count) {
+
+        return this.sampleDistinct(count, RANDOM);
+    }
+
+    /**
+     * Randomly selects several distinct entries from the list, using a specific random
+     * instance. See {@link #sampleDistinct(int)}.
+     *
+     * @param count The amount of entries to select.
+     * @param random The random instance to use.
+     * @return A list of the selected entries, in the order they were selected.
+     * @throws IllegalArgumentException If the count is negative.
+     */
+    public List<WeightedEntry<T>> sampleDistinct (int count, Random random) {
+
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative, got " + count);
+        }
+
+        // The cached tree is shared, so selected entries are removed from a copy of it.
+        final long[] tree = this.getWeightTree().clone();
+        final int size = tree.length - 1;
+        final int limit = Math.min(count, size);
+        final List<WeightedEntry<T>> selected = new ArrayList<>(limit);
+        long remaining = sumTree(tree);
+
+        while (selected.size() < limit && remaining > 0) {
+
+            final long target = Math.min((long) (random.nextDouble() * remaining), remaining - 1);
+            final int index = findInTree(tree, target);
+            final long weight = Math.max(this.entries.get(index).getWeight(), 0);
+
+            selected.add(this.entries.get(index));
+            updateTree(tree, index, -weight);
+            remaining -= weight;
+        }
+
+        if (EpoxideCommons.isTrackingMetrics()) {
+            DRAWS.add(selected.size());
+        }
+
+        return selected;
+    }
+
     /**
      * Updates the total weight value for the selector. This should be caused any time the list
      * is altered.
@@ -140,9 +290,147 @@ public class WeightedSelector<T> {
             total += entry.getWeight();
         }
 
+        this.total = total;
+        this.weightTree = null;
         return total;
     }
 
+    /**
+     * Gets the Fenwick tree of entry weights, building it if needed. Entries with a negative
+     * weight are treated as having a weight of 0.
+     *
+     * @return The Fenwick tree of entry weights.
+     */
+    private long[] getWeightTree () {
+
+        long[] tree = this.weightTree;
+
+        if (tree == null) {
+
+            tree = new long[this.entries.size() + 1];
+
+            for (int index = 1; index < tree.length; index++) {
+
+                tree[index] += Math.max(this.entries.get(index - 1).getWeight(), 0);
+                final int parent = index + (index & -index);
+
+                if (parent < tree.length) {
+                    tree[parent] += tree[index];
+                }
+            }
+
+            this.weightTree = tree;
+        }
+
+        return tree;
+    }
+
+    /**
+     * Gets the sum of all weights in a Fenwick tree.
+     *
+     * @param tree The tree to sum.
+     * @return The total weight of the tree.
+     */
+    private static long sumTree (long[] tree) {
+
+        long sum = 0;
+
+        for (int index = tree.length - 1; index > 0; index -= index & -index) {
+            sum += tree[index];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Finds the entry which covers a target weight in a Fenwick tree.
+     *
+     * @param tree The tree to search.
+     * @param target The target weight. Must be less than the total weight.
+     * @return The index of the entry which covers the target weight.
+     */
+    private static int findInTree (long[] tree, long target) {
+
+        int position = 0;
+
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+
+            final int next = position + step;
+
+            if (next < tree.length && tree[next] <= target) {
+
+                position = next;
+                target -= tree[next];
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Adds an amount to the weight of an entry in a Fenwick tree.
+     *
+     * @param tree The tree to update.
+     * @param index The index of the entry.
+     * @param amount The amount to add.
+     */
+    private static void updateTree (long[] tree, int index, long amount) {
+
+        for (int position = index + 1; position < tree.length; position += position & -position) {
+            tree[position] += amount;
+        }
+    }
+
+    /**
+     * A list which passes everything through to {@link WeightedSelector#entries}, and clears
+     * the cached weight tree whenever an entry is added, removed or replaced.
+     */
+    private final class EntryList extends AbstractList<WeightedEntry<T>> implements RandomAccess {
+
+        @Override
+        public WeightedEntry<T> get (int index) {
+
+            return WeightedSelector.this.entries.get(index);
+        }
+
+        @Override
+        public int size () {
+
+            return WeightedSelector.this.entries.size();
+        }
+
+        @Override
+        public WeightedEntry<T> set (int index, WeightedEntry<T> entry) {
+
+            WeightedSelector.this.weightTree = null;
+            return WeightedSelector.this.entries.set(index, entry);
+        }
+
+        @Override
+        public void add (int index, WeightedEntry<T> entry) {
+
+            WeightedSelector.this.weightTree = null;
+            WeightedSelector.this.entries.add(index, entry);
+            this.modCount++;
+        }
+
+        @Override
+        public WeightedEntry<T> remove (int index) {
+
+            WeightedSelector.this.weightTree = null;
+            this.modCount++;
+            return WeightedSelector.this.entries.remove(index);
+        }
+
+        @Override
+        protected void removeRange (int fromIndex, int toIndex) {
+
+            WeightedSelector.this.weightTree = null;
+            this.modCount++;
+            WeightedSelector.this.entries.subList(fromIndex, toIndex).clear();
+        }
+    }
+
     /**
      * Wrapper for holding an entry value and weight.
      */
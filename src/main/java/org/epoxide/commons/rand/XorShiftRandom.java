@@ -70,7 +70,7 @@ public final class XorShiftRandom extends Random {
     @Override
     public synchronized void setSeed (long seed) {
 
-        this.seed = seed;
+        this.seed = seed == 0 ? 0xdeadbeef : seed;
         super.setSeed(seed);
     }
 
@@ -86,7 +86,8 @@ public final class XorShiftRandom extends Random {
         this.seed ^= this.seed << 21;
         this.seed ^= this.seed >>> 35;
         this.seed ^= this.seed << 4;
-        this.seed &= (1L << bits) - 1;
-        return (int) this.seed;
+
+        // The state must not be masked, otherwise small requests collapse it towards 0.
+        return (int) (this.seed >>> 64 - bits);
     }
 }
\ No newline at end of file
@@ -0,0 +1,349 @@
+package org.epoxide.commons.reflection;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.epoxide.commons.EpoxideCommons;
+
+/**
+ * Generates small functional interface implementations which call a constructor, getter or
+ * setter directly. The classes are spun at runtime by {@link LambdaMetafactory}, the same way
+ * the JVM creates lambdas, and call the member with a normal invoke instruction. This skips
+ * the access checks and argument arrays used by reflection on every call.
+ *
+ * Generated classes can only call members which are public, and whose classes are visible to
+ * this library. Anything else, as well as fields, falls back to an implementation backed by a
+ * method handle, which works the same way but is not as fast.
+ */
+public final class AccessorGenerator {
+
+    /**
+     * Marks classes which do not have a constructor without arguments in
+     * {@link #CONSTRUCTORS}.
+     */
+    private static final Supplier<Object> MISSING = () -> null;
+
+    /**
+     * A cache of generated constructors for each class. A ClassValue is used so the cache does
+     * not stop classes from being unloaded.
+     */
+    private static final ClassValue<Supplier<?>> CONSTRUCTORS = new ClassValue<Supplier<?>>() {
+
+        @Override
+        protected Supplier<?> computeValue (Class<?> type) {
+
+            final Supplier<?> constructor = createConstructor(type);
+            return constructor != null ? constructor : MISSING;
+        }
+    };
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private AccessorGenerator () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Gets a cached supplier which calls the constructor of a class that takes no arguments.
+     * See {@link #createConstructor(Class)}.
+     *
+     * @param clazz The class to construct.
+     * @return A supplier which creates new instances, or null if the class does not have a
+     *         constructor without arguments.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> getConstructor (Class<T> clazz) {
+
+        final Supplier<?> constructor = CONSTRUCTORS.get(clazz);
+        return constructor != MISSING ? (Supplier<T>) constructor : null;
+    }
+
+    /**
+     * Creates a supplier which calls the public constructor of a class that takes no arguments.
+     * If no constructor could be found, this will return null and report the error. Exceptions
+     * thrown by the constructor are passed on to the caller of the supplier.
+     *
+     * @param clazz The class to construct.
+     * @return A supplier which creates new instances, or null if it could not be created.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> createConstructor (Class<T> clazz) {
+
+        final MethodHandle handle;
+
+        try {
+
+            final Constructor<T> constructor = clazz.getConstructor();
+
+            if (Modifier.isAbstract(clazz.getModifiers())) {
+
+                ReflectionUtils.warningLimited("generate", clazz, null, null, () -> "Could not create a constructor for abstract class " + clazz.getName(), null);
+                return null;
+            }
+
+            if (canGenerate(constructor.getModifiers(), clazz)) {
+
+                final Supplier<T> generated = generate(Supplier.class, "get", MethodType.methodType(Object.class), MethodHandles.publicLookup().unreflectConstructor(constructor), MethodType.methodType(clazz));
+
+                if (generated != null) {
+                    return generated;
+                }
+            }
+
+            handle = MethodHandles.publicLookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        }
+
+        catch (final ReflectiveOperationException | SecurityException e) {
+
+            ReflectionUtils.warningLimited("generate", clazz, null, null, () -> "Could not create a constructor for " + clazz.getName(), e);
+            return null;
+        }
+
+        return () -> {
+
+            try {
+
+                return (T) handle.invokeExact();
+            }
+
+            catch (final Throwable e) {
+
+                throw ReflectionUtils.propagate(e);
+            }
+        };
+    }
+
+    /**
+     * Creates a function which calls a getter method. The method must not be static, must not
+     * take any arguments, and must return a value. Primitive values are boxed.
+     *
+     * @param method The getter method.
+     * @return A function which takes an instance and returns the value of the getter.
+     * @throws IllegalArgumentException If the method is not a getter, or can not be accessed.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Function<T, R> createGetter (Method method) {
+
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0 || method.getReturnType() == void.class) {
+            throw new IllegalArgumentException("Method " + method + " is not a getter");
+        }
+
+        if (canGenerate(method.getModifiers(), method.getDeclaringClass(), method.getReturnType())) {
+
+            try {
+
+                final MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+                final Function<T, R> generated = generate(Function.class, "apply", MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+
+                if (generated != null) {
+                    return generated;
+                }
+            }
+
+            catch (final IllegalAccessException e) {
+
+                // Fall back to a method handle which has been made accessible.
+            }
+        }
+
+        final MethodAccessor accessor = getAccessor(method);
+        return instance -> (R) accessor.invoke(instance);
+    }
+
+    /**
+     * Creates a consumer which calls a setter method. The method must not be static, and must
+     * take one argument. The return value of the method is ignored, so setters which return
+     * this are supported. Primitive values are unboxed.
+     *
+     * @param method The setter method.
+     * @return A consumer which takes an instance and the new value.
+     * @throws IllegalArgumentException If the method is not a setter, or can not be accessed.
+     */
+    public static <T, V> BiConsumer<T, V> createSetter (Method method) {
+
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1) {
+            throw new IllegalArgumentException("Method " + method + " is not a setter");
+        }
+
+        if (canGenerate(method.getModifiers(), method.getDeclaringClass(), method.getParameterTypes()[0])) {
+
+            try {
+
+                final MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+                final BiConsumer<T, V> generated = generate(BiConsumer.class, "accept", MethodType.methodType(void.class, Object.class, Object.class), handle, handle.type().wrap().changeReturnType(void.class));
+
+                if (generated != null) {
+                    return generated;
+                }
+            }
+
+            catch (final IllegalAccessException e) {
+
+                // Fall back to a method handle which has been made accessible.
+            }
+        }
+
+        final MethodAccessor accessor = getAccessor(method);
+        return (instance, value) -> accessor.invoke(instance, value);
+    }
+
+    /**
+     * Creates a function which reads a field. Fields can not be used with
+     * {@link LambdaMetafactory}, so this is backed by a {@link FieldAccessor}.
+     *
+     * @param field The field to read.
+     * @return A function which takes an instance and returns the value of the field.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Function<T, R> createGetter (Field field) {
+
+        final FieldAccessor accessor = getAccessor(field);
+        return instance -> (R) accessor.get(instance);
+    }
+
+    /**
+     * Creates a consumer which writes to a field. Fields can not be used with
+     * {@link LambdaMetafactory}, so this is backed by a {@link FieldAccessor}.
+     *
+     * @param field The field to write to.
+     * @return A consumer which takes an instance and the new value.
+     */
+    public static <T, V> BiConsumer<T, V> createSetter (Field field) {
+
+        return getAccessor(field)::set;
+    }
+
+    /**
+     * Uses {@link LambdaMetafactory} to generate an implementation of a functional interface.
+     *
+     * @param type The functional interface to implement.
+     * @param name The name of the interface method.
+     * @param erasedType The erased type of the interface method.
+     * @param target A handle for the member to call.
+     * @param instantiatedType The type of the interface method, using the types of the member.
+     * @return The generated implementation, or null if it could not be generated.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F generate (Class<?> type, String name, MethodType erasedType, MethodHandle target, MethodType instantiatedType) {
+
+        try {
+
+            final CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), name, MethodType.methodType(type), erasedType, target, instantiatedType);
+            return (F) site.getTarget().invoke();
+        }
+
+        catch (final Throwable e) {
+
+            EpoxideCommons.getLazyLogger().fine( () -> "Could not generate an accessor for " + target + ". " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the cached accessor for a method, which is used when a class can not be generated.
+     *
+     * @param method The method to access.
+     * @return The accessor for the method.
+     * @throws IllegalArgumentException If the method can not be accessed.
+     */
+    private static MethodAccessor getAccessor (Method method) {
+
+        final MethodAccessor accessor = ReflectionUtils.getMethod(method.getDeclaringClass(), method.getName(), method.getParameterTypes());
+
+        if (accessor == null) {
+            throw new IllegalArgumentException("Could not access method " + method);
+        }
+
+        return accessor;
+    }
+
+    /**
+     * Gets the cached accessor for a field.
+     *
+     * @param field The field to access.
+     * @return The accessor for the field.
+     * @throws IllegalArgumentException If the field can not be accessed.
+     */
+    private static FieldAccessor getAccessor (Field field) {
+
+        final FieldAccessor accessor = ReflectionUtils.getField(field.getDeclaringClass(), field.getName());
+
+        if (accessor == null) {
+            throw new IllegalArgumentException("Could not access field " + field);
+        }
+
+        return accessor;
+    }
+
+    /**
+     * Checks if a generated class can call a member directly. The member and all of its
+     * enclosing classes must be public, and every class involved must be visible to the class
+     * loader of this library, as the generated class is defined there.
+     *
+     * @param modifiers The modifiers of the member.
+     * @param owner The class which declares the member.
+     * @param types Other types used by the member, such as the return type.
+     * @return Whether or not a class can be generated for the member.
+     */
+    private static boolean canGenerate (int modifiers, Class<?> owner, Class<?>... types) {
+
+        if (!Modifier.isPublic(modifiers) || !isVisible(owner)) {
+            return false;
+        }
+
+        for (Class<?> current = owner; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+
+        for (final Class<?> type : types) {
+            if (!isVisible(type)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if a class can be found by the class loader of this library.
+     *
+     * @param type The class to check.
+     * @return Whether or not the class is visible.
+     */
+    private static boolean isVisible (Class<?> type) {
+
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        try {
+
+            return Class.forName(type.getName(), false, AccessorGenerator.class.getClassLoader()) == type;
+        }
+
+        catch (final ClassNotFoundException | LinkageError e) {
+
+            return false;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import java.util.stream.Collectors;
 
 /**
  * This singleton class is meant to hold all miscellaneous utility code related to classes.
+ * Information about each class is cached in a {@link TypeDescriptor}, so the checks in this
+ * class do not need to search any maps.
  */
 public final class ClassUtils {
 
@@ -31,6 +33,68 @@ public final class ClassUtils {
      */
     private final static Map<Class<?>, Class<?>> WRAPPER_TO_PRIMITIVE = PRIMITIVE_TO_WRAPPER.entrySet().stream().collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
 
+    /**
+     * A cache of type descriptors for each class. A ClassValue is used so the cache does not
+     * stop classes from being unloaded.
+     */
+    private final static ClassValue<TypeDescriptor> DESCRIPTORS = new ClassValue<TypeDescriptor>() {
+
+        @Override
+        protected TypeDescriptor computeValue (Class<?> type) {
+
+            final Class<?> primitive = type.isPrimitive() ? PRIMITIVE_TO_WRAPPER.containsKey(type) ? type : null : WRAPPER_TO_PRIMITIVE.get(type);
+            return new TypeDescriptor(type, primitive, PRIMITIVE_TO_WRAPPER.get(primitive));
+        }
+    };
+
+    /**
+     * Gets the cached descriptor for a class. The descriptor is created the first time it is
+     * requested.
+     *
+     * @param clazz The class to describe.
+     * @return The descriptor for the class.
+     */
+    public static TypeDescriptor getDescriptor (Class<?> clazz) {
+
+        return DESCRIPTORS.get(clazz);
+    }
+
+    /**
+     * Checks if a value of one type can be passed to a method parameter of another type. This
+     * allows widening primitives, boxing and unboxing, and assigning to a super type. See
+     * {@link TypeDescriptor#isAssignableFrom(TypeDescriptor)}.
+     *
+     * @param target The type of the parameter.
+     * @param source The type of the value, or null for a null value.
+     * @return Whether or not the value can be passed as the parameter type.
+     */
+    public static boolean isAssignable (Class<?> target, Class<?> source) {
+
+        return getDescriptor(target).isAssignableFrom(source);
+    }
+
+    /**
+     * Checks if every value type can be passed to the parameter type at the same position.
+     *
+     * @param targets The parameter types.
+     * @param sources The value types. Null entries represent null values.
+     * @return Whether or not the values can be passed as the parameter types.
+     */
+    public static boolean isAssignable (Class<?>[] targets, Class<?>[] sources) {
+
+        if (targets.length != sources.length) {
+            return false;
+        }
+
+        for (int index = 0; index < targets.length; index++) {
+            if (!isAssignable(targets[index], sources[index])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Checks if a class is a valid wrapper class, within the scope of this system.
      *
@@ -39,7 +103,7 @@ public final class ClassUtils {
      */
     public static boolean isWrapper (Class<?> clazz) {
 
-        return WRAPPER_TO_PRIMITIVE.containsKey(clazz);
+        return clazz != null && getDescriptor(clazz).isWrapper();
     }
 
     /**
@@ -51,7 +115,7 @@ public final class ClassUtils {
      */
     public static boolean isPrimitive (Class<?> clazz) {
 
-        return PRIMITIVE_TO_WRAPPER.containsKey(clazz);
+        return clazz != null && getDescriptor(clazz).isPrimitive();
     }
 
     /**
@@ -62,7 +126,7 @@ public final class ClassUtils {
      */
     public static Class<?> getWrapper (Class<?> primitiveClass) {
 
-        return PRIMITIVE_TO_WRAPPER.get(primitiveClass);
+        return primitiveClass != null && primitiveClass.isPrimitive() ? getDescriptor(primitiveClass).getWrapper() : null;
     }
 
     /**
@@ -73,13 +137,13 @@ public final class ClassUtils {
      */
     public static Class<?> getPrimitive (Class<?> wrapperClass) {
 
-        return WRAPPER_TO_PRIMITIVE.get(wrapperClass);
+        return wrapperClass != null && !wrapperClass.isPrimitive() ? getDescriptor(wrapperClass).getPrimitive() : null;
     }
 
     /**
      * Creates a map which links primitive classes with their wrapper counterparts. This is
      * only used to initially generate {@link #PRIMITIVE_TO_WRAPPER} and
-     * {@link #WRAPPER_TO_PRIMITIVE}.
+     * {@link #WRAPPER_TO_PRIMITIVE}, which are used to create type descriptors.
      *
      * @return The basic class map.
      */
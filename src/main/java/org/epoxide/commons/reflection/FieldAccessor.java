@@ -0,0 +1,537 @@
+package org.epoxide.commons.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A cached accessor for a field, backed by method handles. The primitive getters and setters
+ * use handles which are typed for that primitive, so values are not boxed. Each getter
+ * supports the same conversions as {@link Field}, such as reading a byte field with
+ * {@link #getInt(Object)}, and also unboxes wrapper fields. Instances are obtained through
+ * {@link ReflectionUtils#getField(Class, String)}, which caches them per class.
+ */
+public final class FieldAccessor {
+
+    /**
+     * The index used for the boolean getter and setter.
+     */
+    private static final int BOOLEAN = 0;
+
+    /**
+     * The index used for the byte getter and setter.
+     */
+    private static final int BYTE = 1;
+
+    /**
+     * The index used for the char getter and setter.
+     */
+    private static final int CHAR = 2;
+
+    /**
+     * The index used for the short getter and setter.
+     */
+    private static final int SHORT = 3;
+
+    /**
+     * The index used for the int getter and setter.
+     */
+    private static final int INT = 4;
+
+    /**
+     * The index used for the long getter and setter.
+     */
+    private static final int LONG = 5;
+
+    /**
+     * The index used for the float getter and setter.
+     */
+    private static final int FLOAT = 6;
+
+    /**
+     * The index used for the double getter and setter.
+     */
+    private static final int DOUBLE = 7;
+
+    /**
+     * The index used for the Object getter and setter.
+     */
+    private static final int OBJECT = 8;
+
+    /**
+     * The types which have their own getter and setter, in index order.
+     */
+    private static final Class<?>[] TYPES = { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class, Object.class };
+
+    /**
+     * The field being accessed.
+     */
+    private final Field field;
+
+    /**
+     * The getters for each type in {@link #TYPES}. An entry is null if the field can not be
+     * converted to that type.
+     */
+    private final MethodHandle[] getters = new MethodHandle[TYPES.length];
+
+    /**
+     * The setters for each type in {@link #TYPES}. An entry is null if that type can not be
+     * converted to the type of the field, or if the field is final.
+     */
+    private final MethodHandle[] setters = new MethodHandle[TYPES.length];
+
+    /**
+     * Constructs a new accessor for a field.
+     *
+     * @param field The field to access.
+     * @throws IllegalAccessException If the field could not be made accessible.
+     */
+    FieldAccessor (Field field) throws IllegalAccessException {
+
+        this.field = field;
+        field.setAccessible(true);
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final boolean isStatic = Modifier.isStatic(field.getModifiers());
+        MethodHandle getter = lookup.unreflectGetter(field);
+        MethodHandle setter = Modifier.isFinal(field.getModifiers()) ? null : lookup.unreflectSetter(field);
+
+        // Static fields ignore the instance, so every handle has the same parameters.
+        if (isStatic) {
+
+            getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            setter = setter != null ? MethodHandles.dropArguments(setter, 0, Object.class) : null;
+        }
+
+        for (int index = 0; index < TYPES.length; index++) {
+
+            this.getters[index] = adapt(getter, MethodType.methodType(TYPES[index], Object.class), field.getType(), TYPES[index]);
+            this.setters[index] = setter != null ? adapt(setter, MethodType.methodType(void.class, Object.class, TYPES[index]), field.getType(), TYPES[index]) : null;
+        }
+    }
+
+    /**
+     * Gets the field being accessed.
+     *
+     * @return The field being accessed.
+     */
+    public Field getField () {
+
+        return this.field;
+    }
+
+    /**
+     * Gets the value of the field. Primitive values are boxed.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public Object get (Object instance) {
+
+        try {
+
+            return this.getter(OBJECT).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a boolean field.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public boolean getBoolean (Object instance) {
+
+        try {
+
+            return (boolean) this.getter(BOOLEAN).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a byte field.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public byte getByte (Object instance) {
+
+        try {
+
+            return (byte) this.getter(BYTE).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a char field.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public char getChar (Object instance) {
+
+        try {
+
+            return (char) this.getter(CHAR).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a field as a short. Works for byte and short fields.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public short getShort (Object instance) {
+
+        try {
+
+            return (short) this.getter(SHORT).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a field as an int. Works for byte, char, short and int fields.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public int getInt (Object instance) {
+
+        try {
+
+            return (int) this.getter(INT).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a field as a long. Works for all integral fields.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public long getLong (Object instance) {
+
+        try {
+
+            return (long) this.getter(LONG).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a field as a float. Works for all numeric fields except double.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public float getFloat (Object instance) {
+
+        try {
+
+            return (float) this.getter(FLOAT).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the value of a field as a double. Works for all numeric fields.
+     *
+     * @param instance The instance to read from. Ignored for static fields.
+     * @return The value of the field.
+     */
+    public double getDouble (Object instance) {
+
+        try {
+
+            return (double) this.getter(DOUBLE).invokeExact(instance);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of the field. Values for primitive fields are unboxed.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void set (Object instance, Object value) {
+
+        try {
+
+            this.setter(OBJECT).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a boolean field.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setBoolean (Object instance, boolean value) {
+
+        try {
+
+            this.setter(BOOLEAN).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using a byte. Works for all numeric fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setByte (Object instance, byte value) {
+
+        try {
+
+            this.setter(BYTE).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using a char. Works for char, int, long, float and double
+     * fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setChar (Object instance, char value) {
+
+        try {
+
+            this.setter(CHAR).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using a short. Works for short, int, long, float and double
+     * fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setShort (Object instance, short value) {
+
+        try {
+
+            this.setter(SHORT).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using an int. Works for int, long, float and double fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setInt (Object instance, int value) {
+
+        try {
+
+            this.setter(INT).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using a long. Works for long, float and double fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setLong (Object instance, long value) {
+
+        try {
+
+            this.setter(LONG).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a field using a float. Works for float and double fields.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setFloat (Object instance, float value) {
+
+        try {
+
+            this.setter(FLOAT).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Sets the value of a double field.
+     *
+     * @param instance The instance to write to. Ignored for static fields.
+     * @param value The new value.
+     */
+    public void setDouble (Object instance, double value) {
+
+        try {
+
+            this.setter(DOUBLE).invokeExact(instance, value);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+
+    /**
+     * Gets the getter for a type, or throws an exception if the field can not be read as that
+     * type.
+     *
+     * @param index The index of the type in {@link #TYPES}.
+     * @return The getter for the type.
+     */
+    private MethodHandle getter (int index) {
+
+        final MethodHandle handle = this.getters[index];
+
+        if (handle == null) {
+            throw new IllegalArgumentException("Can not get " + this.field.getType().getName() + " field " + this.field.getName() + " as " + TYPES[index].getName());
+        }
+
+        return handle;
+    }
+
+    /**
+     * Gets the setter for a type, or throws an exception if the field can not be set using
+     * that type.
+     *
+     * @param index The index of the type in {@link #TYPES}.
+     * @return The setter for the type.
+     */
+    private MethodHandle setter (int index) {
+
+        final MethodHandle handle = this.setters[index];
+
+        if (handle == null && Modifier.isFinal(this.field.getModifiers())) {
+            throw new IllegalArgumentException("Can not set final field " + this.field.getName());
+        }
+
+        if (handle == null) {
+            throw new IllegalArgumentException("Can not set " + this.field.getType().getName() + " field " + this.field.getName() + " using " + TYPES[index].getName());
+        }
+
+        return handle;
+    }
+
+    /**
+     * Adapts a handle to a new type. Method handles will box and unbox through any reference
+     * type, while fields only convert primitives to and from their own wrapper. Reference
+     * fields are therefore only adapted to primitive types when they hold a wrapper.
+     *
+     * @param handle The handle to adapt.
+     * @param type The new type for the handle.
+     * @param fieldType The type of the field.
+     * @param accessType The type the field is being accessed as.
+     * @return The adapted handle, or null if the conversion is not allowed.
+     */
+    private static MethodHandle adapt (MethodHandle handle, MethodType type, Class<?> fieldType, Class<?> accessType) {
+
+        if (accessType.isPrimitive() && !fieldType.isPrimitive() && !ClassUtils.isWrapper(fieldType)) {
+            return null;
+        }
+
+        try {
+
+            return handle.asType(type);
+        }
+
+        catch (final WrongMethodTypeException e) {
+
+            return null;
+        }
+    }
+}
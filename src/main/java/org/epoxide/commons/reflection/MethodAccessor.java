@@ -0,0 +1,95 @@
+package org.epoxide.commons.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A cached accessor for a method, backed by a method handle. The handle is adapted once so
+ * every call has the same shape, and primitive arguments and return values are boxed and
+ * unboxed using the usual rules. Instances are obtained through
+ * {@link ReflectionUtils#getMethod(Class, String, Class...)}, which caches them per class.
+ */
+public final class MethodAccessor {
+
+    /**
+     * The method being accessed.
+     */
+    private final Method method;
+
+    /**
+     * The raw handle for the method. Static methods do not take an instance.
+     */
+    private final MethodHandle handle;
+
+    /**
+     * A handle which takes the instance and an array of arguments, and returns an Object.
+     */
+    private final MethodHandle invoker;
+
+    /**
+     * Constructs a new accessor for a method.
+     *
+     * @param method The method to access.
+     * @throws IllegalAccessException If the method could not be made accessible.
+     */
+    MethodAccessor (Method method) throws IllegalAccessException {
+
+        this.method = method;
+        method.setAccessible(true);
+        this.handle = MethodHandles.lookup().unreflect(method);
+
+        MethodHandle invoker = this.handle.asSpreader(Object[].class, method.getParameterCount());
+
+        // Static methods ignore the instance, so every call has the same parameters.
+        if (Modifier.isStatic(method.getModifiers())) {
+            invoker = MethodHandles.dropArguments(invoker, 0, Object.class);
+        }
+
+        this.invoker = invoker.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    }
+
+    /**
+     * Gets the method being accessed.
+     *
+     * @return The method being accessed.
+     */
+    public Method getMethod () {
+
+        return this.method;
+    }
+
+    /**
+     * Gets the raw method handle. This can be used with invokeExact to avoid boxing, when the
+     * exact types are known. For instance methods the first parameter is the instance.
+     *
+     * @return The raw method handle.
+     */
+    public MethodHandle getHandle () {
+
+        return this.handle;
+    }
+
+    /**
+     * Invokes the method. Exceptions thrown by the method are passed on unchanged, with
+     * checked exceptions wrapped in an UndeclaredThrowableException.
+     *
+     * @param instance The instance to invoke the method on. Ignored for static methods.
+     * @param args The arguments for the method.
+     * @return The value returned by the method, or null for void methods.
+     */
+    public Object invoke (Object instance, Object... args) {
+
+        try {
+
+            return this.invoker.invokeExact(instance, args);
+        }
+
+        catch (final Throwable e) {
+
+            throw ReflectionUtils.propagate(e);
+        }
+    }
+}
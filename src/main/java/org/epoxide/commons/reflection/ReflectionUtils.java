@@ -1,17 +1,50 @@
 package org.epoxide.commons.reflection;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.logging.LazyLogger;
+import org.epoxide.commons.metrics.Counter;
 
 /**
  * This singleton class is meant to hold all miscellaneous utility code related to reflection.
  */
 public final class ReflectionUtils {
 
+    /**
+     * Counts constructor lookups which found a constructor.
+     */
+    private static final Counter CONSTRUCTOR_HITS = EpoxideCommons.getMetrics().counter("reflection.constructor.hits");
+
+    /**
+     * Counts constructor lookups which did not find a constructor.
+     */
+    private static final Counter CONSTRUCTOR_MISSES = EpoxideCommons.getMetrics().counter("reflection.constructor.misses");
+
+    /**
+     * A cache of field and method accessors for each class. A ClassValue is used so the cache
+     * does not stop classes from being unloaded.
+     */
+    private static final ClassValue<Accessors> ACCESSORS = new ClassValue<Accessors>() {
+
+        @Override
+        protected Accessors computeValue (Class<?> type) {
+
+            return new Accessors();
+        }
+    };
+
     /**
      * Utility classes, such as this one, are not meant to be instantiated. Java adds an
      * implicit public constructor to every class which does not define at lease one
@@ -45,42 +78,254 @@ public final class ReflectionUtils {
 
             catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
 
-                EpoxideCommons.getLogger().log(Level.WARNING, "Could not construct for " + getConstructionInfo(clazz, types), e);
+                EpoxideCommons.getLazyLogger().warning( () -> "Could not construct for " + getConstructionInfo(clazz, types), e);
             }
         }
 
-        EpoxideCommons.getLogger().log(Level.WARNING, "No constructor found for " + getConstructionInfo(clazz, types));
+        warningLimited("construct", clazz, null, types, () -> "No constructor found for " + getConstructionInfo(clazz, types), null);
         return null;
     }
 
     /**
      * Attempts to find a class constructor from an array of classes which represent the
-     * construction argument types being looked for.
+     * construction argument types being looked for. If there is no constructor with exactly
+     * those types, the most specific public constructor which accepts them is used instead.
+     * This allows for widening primitives, boxing, sub types and null arguments. If no single
+     * constructor is more specific than the others, the call is ambiguous and nothing is
+     * returned.
      *
      * @param clazz The clazz to look through.
-     * @param types The constructor argument types.
-     * @return The first valid constructor, or null if none could be found.
+     * @param types The constructor argument types. Null entries represent null arguments.
+     * @return The first valid constructor, or null if none could be found or the call is
+     *         ambiguous.
      */
     public static <T> Constructor<T> findConstructor (Class<T> clazz, Class<?>[] types) {
 
         try {
 
-            return clazz.getConstructor(types);
+            final Constructor<T> constructor = clazz.getConstructor(types);
+            countLookup(CONSTRUCTOR_HITS);
+            return constructor;
         }
 
         catch (final NoSuchMethodException e) {
 
-            EpoxideCommons.getLogger().log(Level.WARNING, "Tried to find a constructor, but nothing was found for " + getConstructionInfo(clazz, types), e);
+            final List<Constructor<T>> constructors = findApplicableConstructors(clazz, types);
+
+            if (constructors.size() == 1) {
+
+                countLookup(CONSTRUCTOR_HITS);
+                return constructors.get(0);
+            }
+
+            countLookup(CONSTRUCTOR_MISSES);
+
+            if (constructors.isEmpty()) {
+                warningLimited("find", clazz, null, types, () -> "Tried to find a constructor, but nothing was found for " + getConstructionInfo(clazz, types), e);
+            }
+
+            else {
+                warningLimited("ambiguous", clazz, null, types, () -> "Tried to find a constructor, but " + constructors + " are all equally specific for " + getConstructionInfo(clazz, types), null);
+            }
         }
 
         catch (final SecurityException e) {
 
-            EpoxideCommons.getLogger().log(Level.WARNING, "Security violation! Tried to access " + getConstructionInfo(clazz, types), e);
+            countLookup(CONSTRUCTOR_MISSES);
+            warningLimited("security", clazz, null, types, () -> "Security violation! Tried to access " + getConstructionInfo(clazz, types), e);
         }
 
         return null;
     }
 
+    /**
+     * Finds the most specific public constructors which accept the argument types. A
+     * constructor is more specific than another if all of its parameter types can be passed
+     * to the other. The checks use {@link ClassUtils#isAssignable(Class[], Class[])}. Like the
+     * Java compiler, a call is only valid if there is a single most specific constructor, so
+     * more than one result means the call is ambiguous.
+     *
+     * @param clazz The class to look through.
+     * @param types The constructor argument types. Null entries represent null arguments.
+     * @return The applicable constructors which are not less specific than any other
+     *         applicable constructor. Empty if none were found.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<Constructor<T>> findApplicableConstructors (Class<T> clazz, Class<?>[] types) {
+
+        final List<Constructor<T>> applicable = new ArrayList<>();
+
+        for (final Constructor<?> candidate : clazz.getConstructors()) {
+            if (ClassUtils.isAssignable(candidate.getParameterTypes(), types)) {
+                applicable.add((Constructor<T>) candidate);
+            }
+        }
+
+        final List<Constructor<T>> specific = new ArrayList<>();
+
+        for (final Constructor<T> candidate : applicable) {
+
+            boolean mostSpecific = true;
+
+            for (final Constructor<T> other : applicable) {
+                if (other != candidate && !ClassUtils.isAssignable(other.getParameterTypes(), candidate.getParameterTypes())) {
+
+                    mostSpecific = false;
+                    break;
+                }
+            }
+
+            if (mostSpecific) {
+                specific.add(candidate);
+            }
+        }
+
+        // When no constructor is more specific than all others, they are all returned as ambiguous.
+        return specific.isEmpty() ? applicable : specific;
+    }
+
+    /**
+     * Gets a cached accessor for a field. The field can be declared by the class or any of its
+     * super classes, and can have any access level. If no field could be found or made
+     * accessible, this will return null and report the error.
+     *
+     * @param clazz The class to search.
+     * @param name The name of the field.
+     * @return An accessor for the field, or null if it could not be found.
+     */
+    public static FieldAccessor getField (Class<?> clazz, String name) {
+
+        final Map<String, FieldAccessor> fields = ACCESSORS.get(clazz).fields;
+        final FieldAccessor accessor = fields.get(name);
+        return accessor != null ? accessor : fields.computeIfAbsent(name, key -> createFieldAccessor(clazz, key));
+    }
+
+    /**
+     * Gets a cached accessor for a method. The method can be declared by the class, any of its
+     * super classes, or any of its interfaces, and can have any access level. If no method
+     * could be found or made accessible, this will return null and report the error.
+     *
+     * @param clazz The class to search.
+     * @param name The name of the method.
+     * @param types The parameter types of the method.
+     * @return An accessor for the method, or null if it could not be found.
+     */
+    public static MethodAccessor getMethod (Class<?> clazz, String name, Class<?>... types) {
+
+        final List<Object> key = Arrays.asList(name, Arrays.asList(types));
+        final Map<List<Object>, MethodAccessor> methods = ACCESSORS.get(clazz).methods;
+        final MethodAccessor accessor = methods.get(key);
+        return accessor != null ? accessor : methods.computeIfAbsent(key, unused -> createMethodAccessor(clazz, name, types.clone()));
+    }
+
+    /**
+     * Rethrows an exception caught while invoking a method handle. Unchecked exceptions and
+     * errors are rethrown as they are, and checked exceptions are wrapped.
+     *
+     * @param e The exception to rethrow.
+     * @return Never returns. The return type allows callers to use a throw statement.
+     */
+    static RuntimeException propagate (Throwable e) {
+
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+
+        throw new UndeclaredThrowableException(e);
+    }
+
+    /**
+     * Creates an accessor for a field, searching the class and its super classes.
+     *
+     * @param clazz The class to search.
+     * @param name The name of the field.
+     * @return An accessor for the field, or null if it could not be created.
+     */
+    private static FieldAccessor createFieldAccessor (Class<?> clazz, String name) {
+
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+
+            try {
+
+                return new FieldAccessor(current.getDeclaredField(name));
+            }
+
+            catch (final NoSuchFieldException e) {
+
+                // Keep looking in the super class.
+            }
+
+            // Java 9 and later throw InaccessibleObjectException, which can not be named here.
+            catch (final IllegalAccessException | RuntimeException e) {
+
+                warningLimited("field", clazz, name, null, () -> "Could not access field " + name + " in " + clazz.getName(), e);
+                return null;
+            }
+        }
+
+        warningLimited("field", clazz, name, null, () -> "Tried to find a field, but nothing was found for " + name + " in " + clazz.getName(), null);
+        return null;
+    }
+
+    /**
+     * Creates an accessor for a method, searching the class, its super classes, and then its
+     * public interface methods.
+     *
+     * @param clazz The class to search.
+     * @param name The name of the method.
+     * @param types The parameter types of the method.
+     * @return An accessor for the method, or null if it could not be created.
+     */
+    private static MethodAccessor createMethodAccessor (Class<?> clazz, String name, Class<?>[] types) {
+
+        try {
+
+            for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+
+                try {
+
+                    return new MethodAccessor(current.getDeclaredMethod(name, types));
+                }
+
+                catch (final NoSuchMethodException e) {
+
+                    // Keep looking in the super class.
+                }
+            }
+
+            return new MethodAccessor(clazz.getMethod(name, types));
+        }
+
+        catch (final NoSuchMethodException e) {
+
+            warningLimited("method", clazz, name, types, () -> "Tried to find a method, but nothing was found for " + name + " in " + getConstructionInfo(clazz, types), e);
+        }
+
+        // Java 9 and later throw InaccessibleObjectException, which can not be named here.
+        catch (final IllegalAccessException | RuntimeException e) {
+
+            warningLimited("method", clazz, name, types, () -> "Could not access method " + name + " in " + getConstructionInfo(clazz, types), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Increments a constructor lookup counter, if internal metrics are being tracked.
+     *
+     * @param counter The counter to increment.
+     */
+    private static void countLookup (Counter counter) {
+
+        if (EpoxideCommons.isTrackingMetrics()) {
+            counter.increment();
+        }
+    }
+
     /**
      * Creates an array of classes which represent the types of the passed objects. The order
      * of types is preserved.
@@ -109,6 +354,27 @@ public final class ReflectionUtils {
         return types;
     }
 
+    /**
+     * Logs a rate limited warning about a class. The key for the warning is only built when
+     * warnings are loggable, and it is made from the names of the classes rather than the
+     * classes, so the rate limits do not keep classes from being unloaded.
+     *
+     * @param type The type of warning.
+     * @param clazz The class the warning is for.
+     * @param name The name of the member the warning is for. Can be null.
+     * @param argTypes The arguments of the member the warning is for. Can be null.
+     * @param message A supplier for the message.
+     * @param thrown The throwable to log with the message. Can be null.
+     */
+    static void warningLimited (String type, Class<?> clazz, String name, Class<?>[] argTypes, Supplier<String> message, Throwable thrown) {
+
+        final LazyLogger logger = EpoxideCommons.getLazyLogger();
+
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.warningLimited(type + ' ' + clazz.getName() + ' ' + name + ' ' + Arrays.toString(argTypes), message, thrown);
+        }
+    }
+
     /**
      * A quick utility method for printing class and constructor arguments. Used to make
      * printing the debug info easier.
@@ -121,4 +387,20 @@ public final class ReflectionUtils {
 
         return "Class: " + clazz.getName() + " Args: " + Arrays.toString(argTypes);
     }
-}
+
+    /**
+     * Holds the cached accessors for a single class.
+     */
+    private static final class Accessors {
+
+        /**
+         * The field accessors, keyed by field name.
+         */
+        private final Map<String, FieldAccessor> fields = new ConcurrentHashMap<>();
+
+        /**
+         * The method accessors, keyed by a list of the name and parameter types.
+         */
+        private final Map<List<Object>, MethodAccessor> methods = new ConcurrentHashMap<>();
+    }
+}
\ No newline at end of file
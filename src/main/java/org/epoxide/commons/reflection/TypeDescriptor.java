@@ -0,0 +1,253 @@
+package org.epoxide.commons.reflection;
+
+/**
+ * Describes a class in a way which allows common type checks to be done without searching
+ * lookup tables. Each descriptor knows the primitive and wrapper forms of its type, and its
+ * array component. Widening primitive conversions are checked with a bit mask, and sub type
+ * checks use {@link Class#isAssignableFrom(Class)}, which the JIT turns into a fast built in
+ * check. Descriptors are cached per class by {@link ClassUtils#getDescriptor(Class)}.
+ */
+public final class TypeDescriptor {
+
+    /**
+     * The primitive types, in the order used by {@link #WIDENING}.
+     */
+    private static final Class<?>[] PRIMITIVES = { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class };
+
+    /**
+     * For each primitive type, a bit mask of the primitive types it can be widened to,
+     * including itself. Bits are in the order of {@link #PRIMITIVES}.
+     */
+    private static final int[] WIDENING = { 0b00000001, 0b11111010, 0b11110100, 0b11111000, 0b11110000, 0b11100000, 0b11000000, 0b10000000 };
+
+    /**
+     * The class being described.
+     */
+    private final Class<?> type;
+
+    /**
+     * The position of the type in {@link #PRIMITIVES}, or -1 if it is not primitive.
+     */
+    private final int primitiveIndex;
+
+    /**
+     * The primitive form of the type. This is the type itself for primitives, the primitive
+     * for wrappers, and null for everything else.
+     */
+    private final Class<?> primitive;
+
+    /**
+     * The wrapper form of the type. This is the type itself for wrappers, the wrapper for
+     * primitives, and null for everything else.
+     */
+    private final Class<?> wrapper;
+
+    /**
+     * The descriptor for the array component type, or null if the type is not an array.
+     */
+    private final TypeDescriptor component;
+
+    /**
+     * Constructs a new descriptor. Use {@link ClassUtils#getDescriptor(Class)} instead, which
+     * caches the result.
+     *
+     * @param type The class to describe.
+     * @param primitive The primitive form of the type, or null.
+     * @param wrapper The wrapper form of the type, or null.
+     */
+    TypeDescriptor (Class<?> type, Class<?> primitive, Class<?> wrapper) {
+
+        this.type = type;
+        this.primitive = primitive;
+        this.wrapper = wrapper;
+        this.primitiveIndex = type.isPrimitive() ? indexOf(type) : -1;
+        this.component = type.isArray() ? ClassUtils.getDescriptor(type.getComponentType()) : null;
+    }
+
+    /**
+     * Gets the class being described.
+     *
+     * @return The class being described.
+     */
+    public Class<?> getType () {
+
+        return this.type;
+    }
+
+    /**
+     * Checks if the type is one of the eight primitive types. void is not included.
+     *
+     * @return Whether or not the type is primitive.
+     */
+    public boolean isPrimitive () {
+
+        return this.primitiveIndex >= 0;
+    }
+
+    /**
+     * Checks if the type is one of the eight primitive wrapper types.
+     *
+     * @return Whether or not the type is a wrapper.
+     */
+    public boolean isWrapper () {
+
+        return this.wrapper == this.type;
+    }
+
+    /**
+     * Checks if the type is void.
+     *
+     * @return Whether or not the type is void.
+     */
+    public boolean isVoid () {
+
+        return this.type == void.class;
+    }
+
+    /**
+     * Checks if the type is an array.
+     *
+     * @return Whether or not the type is an array.
+     */
+    public boolean isArray () {
+
+        return this.component != null;
+    }
+
+    /**
+     * Gets the primitive form of the type.
+     *
+     * @return The type itself for primitives, the primitive for wrappers, and null for all
+     *         other types.
+     */
+    public Class<?> getPrimitive () {
+
+        return this.primitive;
+    }
+
+    /**
+     * Gets the wrapper form of the type.
+     *
+     * @return The type itself for wrappers, the wrapper for primitives, and null for all other
+     *         types.
+     */
+    public Class<?> getWrapper () {
+
+        return this.wrapper;
+    }
+
+    /**
+     * Gets the descriptor for the component type of an array.
+     *
+     * @return The descriptor of the component type, or null if the type is not an array.
+     */
+    public TypeDescriptor getComponent () {
+
+        return this.component;
+    }
+
+    /**
+     * Gets the number of array dimensions of the type.
+     *
+     * @return The number of array dimensions, or 0 if the type is not an array.
+     */
+    public int getDimensions () {
+
+        return this.component != null ? this.component.getDimensions() + 1 : 0;
+    }
+
+    /**
+     * Checks if a primitive value of another type can be widened to this type. Every
+     * primitive can be widened to itself.
+     *
+     * @param other The type to widen from.
+     * @return Whether or not both types are primitive, and the other type can be widened to
+     *         this one.
+     */
+    public boolean isWideningFrom (TypeDescriptor other) {
+
+        return this.primitiveIndex >= 0 && other.primitiveIndex >= 0 && (WIDENING[other.primitiveIndex] & 1 << this.primitiveIndex) != 0;
+    }
+
+    /**
+     * Checks if a value of another type can be assigned to this type without any conversion.
+     * This matches {@link Class#isAssignableFrom(Class)}.
+     *
+     * @param other The type of the value.
+     * @return Whether or not the value can be assigned directly.
+     */
+    public boolean isSubtype (TypeDescriptor other) {
+
+        if (this == other) {
+            return true;
+        }
+
+        if (this.primitiveIndex >= 0 || other.primitiveIndex >= 0 || this.isVoid() || other.isVoid()) {
+            return false;
+        }
+
+        return this.type.isAssignableFrom(other.type);
+    }
+
+    /**
+     * Checks if a value of another type can be passed to a method parameter of this type. This
+     * allows the conversions used for method invocation: widening primitives, boxing and
+     * unboxing, and assigning to a super type.
+     *
+     * @param other The type of the value.
+     * @return Whether or not the value can be passed as this type.
+     */
+    public boolean isAssignableFrom (TypeDescriptor other) {
+
+        if (this.isSubtype(other) || this.isWideningFrom(other)) {
+            return true;
+        }
+
+        // Boxing, followed by assigning the wrapper to a super type such as Number.
+        if (other.primitiveIndex >= 0 && this.primitiveIndex < 0) {
+            return !this.isVoid() && this.type.isAssignableFrom(other.wrapper);
+        }
+
+        // Unboxing, followed by widening the primitive.
+        if (this.primitiveIndex >= 0 && other.isWrapper()) {
+            return this.isWideningFrom(ClassUtils.getDescriptor(other.primitive));
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a value of another type can be passed to a method parameter of this type. A
+     * null type represents a null value, which can be passed as any reference type.
+     *
+     * @param other The type of the value, or null for a null value.
+     * @return Whether or not the value can be passed as this type.
+     */
+    public boolean isAssignableFrom (Class<?> other) {
+
+        return other == null ? this.primitiveIndex < 0 && !this.isVoid() : this.isAssignableFrom(ClassUtils.getDescriptor(other));
+    }
+
+    /**
+     * Finds the position of a primitive type in {@link #PRIMITIVES}.
+     *
+     * @param type The primitive type.
+     * @return The position of the type, or -1 if it was not found.
+     */
+    private static int indexOf (Class<?> type) {
+
+        for (int index = 0; index < PRIMITIVES.length; index++) {
+            if (PRIMITIVES[index] == type) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String toString () {
+
+        return "TypeDescriptor[" + this.type.getName() + "]";
+    }
+}
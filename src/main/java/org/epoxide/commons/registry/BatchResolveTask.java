@@ -0,0 +1,98 @@
+package org.epoxide.commons.registry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Resolves a large batch of lookups by splitting it into ranges, which are resolved in
+ * parallel on the common ForkJoinPool. Small batches are resolved on the calling thread, where
+ * the cost of splitting would outweigh the gain.
+ */
+final class BatchResolveTask extends RecursiveTask<Integer> {
+
+    /**
+     * The version identifier used for serialization.
+     */
+    private static final long serialVersionUID = 2948270367419524867L;
+
+    /**
+     * The smallest batch which is split across threads.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * The largest range which is resolved by a single task.
+     */
+    private static final int CHUNK_SIZE = 1 << 11;
+
+    /**
+     * The function which resolves a range of the batch.
+     */
+    private final Range range;
+
+    /**
+     * The first index resolved by this task.
+     */
+    private final int from;
+
+    /**
+     * The index after the last index resolved by this task.
+     */
+    private final int to;
+
+    /**
+     * Constructs a new task for part of a batch.
+     *
+     * @param range The function which resolves a range of the batch.
+     * @param from The first index to resolve.
+     * @param to The index after the last index to resolve.
+     */
+    private BatchResolveTask (Range range, int from, int to) {
+
+        this.range = range;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Resolves a whole batch, in parallel if it is large enough.
+     *
+     * @param length The size of the batch.
+     * @param range The function which resolves a range of the batch.
+     * @return The amount of lookups which found a value.
+     */
+    static int resolve (int length, Range range) {
+
+        return length < PARALLEL_THRESHOLD ? range.resolve(0, length) : ForkJoinPool.commonPool().invoke(new BatchResolveTask(range, 0, length));
+    }
+
+    @Override
+    protected Integer compute () {
+
+        if (this.to - this.from <= CHUNK_SIZE) {
+            return this.range.resolve(this.from, this.to);
+        }
+
+        final int middle = this.from + this.to >>> 1;
+        final BatchResolveTask left = new BatchResolveTask(this.range, this.from, middle);
+        left.fork();
+        final int right = new BatchResolveTask(this.range, middle, this.to).compute();
+        return right + left.join();
+    }
+
+    /**
+     * Resolves a range of a batch.
+     */
+    @FunctionalInterface
+    interface Range {
+
+        /**
+         * Resolves a range of a batch.
+         *
+         * @param from The first index to resolve.
+         * @param to The index after the last index to resolve.
+         * @return The amount of lookups which found a value.
+         */
+        int resolve (int from, int to);
+    }
+}
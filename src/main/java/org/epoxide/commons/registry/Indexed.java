@@ -0,0 +1,36 @@
+package org.epoxide.commons.registry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@link IRegisterable} implementation to be added to the registry index when the
+ * project is compiled. The index is written by {@link RegistryIndexProcessor} and read by
+ * {@link RegistryIndex}, which allows a {@link NamedRegistry} to be filled without scanning
+ * the classpath. The annotated class must be public, not abstract, and have a public
+ * constructor with no arguments.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Indexed {
+
+    /**
+     * The identifier to register the class with, in the usual domain:name format.
+     *
+     * @return The identifier for the class.
+     */
+    String value ();
+
+    /**
+     * The name of the registry the class belongs to. This allows a single project to index
+     * classes for several registries. See {@link RegistryIndex#load(NamedRegistry, Class,
+     * String)}.
+     *
+     * @return The name of the registry.
+     */
+    String registry () default "";
+}
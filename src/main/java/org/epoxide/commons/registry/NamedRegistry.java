@@ -1,14 +1,27 @@
 package org.epoxide.commons.registry;
 
 import java.io.Serializable;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
+import org.epoxide.commons.EpoxideCommons;
 import org.epoxide.commons.collections.BiMap;
+import org.epoxide.commons.collections.Footprint;
+import org.epoxide.commons.collections.Object2IntMap;
+import org.epoxide.commons.metrics.Counter;
 
 /**
  * A bidirectional registry which uses string based identifiers as the keys. Each key is an
@@ -16,9 +29,25 @@ import org.epoxide.commons.collections.BiMap;
  * the first is the domain and is used to define the owner of the registered value, and the
  * second is the name of the value being registered. This is primarily useful when there is a
  * possibility of plug-ins or modifications registering things with your registry.
+ *
+ * Each identifier is also given a numeric ID when it is first registered, which stays the same
+ * if the value is replaced. Values can be registered lazily using
+ * {@link #registerLazy(Identifier, Supplier)}, in which case they are only created when first
+ * looked up. Once registration has finished, lookups are safe from multiple threads, and each
+ * lazy value is only created once.
  */
 public class NamedRegistry<V> implements Iterable<V>, Serializable {
 
+    /**
+     * Counts lookups across all registries which found a value.
+     */
+    private static final Counter LOOKUP_HITS = EpoxideCommons.getMetrics().counter("registry.lookup.hits");
+
+    /**
+     * Counts lookups across all registries which did not find a value.
+     */
+    private static final Counter LOOKUP_MISSES = EpoxideCommons.getMetrics().counter("registry.lookup.misses");
+
     /**
      * An array which holds a cache of all registered values. This cache should only ever be
      * modified internally.
@@ -28,7 +57,43 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
     /**
      * A bidirectional map which contains all the identifiers and registered values.
      */
-    private final BiMap<Identifier, V> values = new BiMap<>();
+    private BiMap<Identifier, V> values = new BiMap<>();
+
+    /**
+     * A map of identifiers which were registered lazily. These are kept separate from
+     * {@link #values} so that creating a value never modifies the registry, which keeps
+     * lookups from multiple threads safe.
+     */
+    private Map<Identifier, LazyValue<V>> lazyValues = new HashMap<>();
+
+    /**
+     * A map of identifiers to their numeric IDs.
+     */
+    private final Object2IntMap<Identifier> ids = new Object2IntMap<Identifier>().setDefaultReturnValue(-1);
+
+    /**
+     * A list of identifiers, where the index of each identifier is its numeric ID.
+     */
+    private final ArrayList<Identifier> identifiersById = new ArrayList<>();
+
+    /**
+     * A fingerprint of the identifiers and their numeric IDs, updated as they are registered.
+     */
+    private final RegistryFingerprint fingerprint = new RegistryFingerprint();
+
+    /**
+     * The domain strings used by registered identifiers. Identifiers which the registry
+     * creates from strings reuse these, so entries in the same domain share one string.
+     */
+    private final Map<String, String> domains = new HashMap<>();
+
+    /**
+     * A snapshot which maps identifier strings to their values, used by
+     * {@link #resolveAll(String[], Object[])}. Lazy values are stored as their holder, so
+     * building the snapshot does not create them. Built when first needed, and cleared
+     * whenever anything is registered.
+     */
+    private volatile RegistrySnapshot<Object> lookupIndex;
 
     /**
      * Gets the Identifier for a registered value. This can be null.
@@ -39,17 +104,63 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public Identifier getIdentifier (V value) {
 
-        return this.values.getKey(value);
+        final Identifier identifier = this.values.getKey(value);
+
+        if (identifier == null && value != null) {
+
+            for (final Entry<Identifier, LazyValue<V>> entry : this.lazyValues.entrySet()) {
+                if (entry.getValue().isCreated() && value.equals(entry.getValue().get())) {
+                    return entry.getKey();
+                }
+            }
+        }
+
+        return identifier;
+    }
+
+    /**
+     * Gets the Identifier which uses a numeric ID.
+     *
+     * @param id The numeric ID to look for.
+     * @return The Identifier with the numeric ID, or null if the ID has not been used.
+     */
+    public Identifier getIdentifier (int id) {
+
+        return id >= 0 && id < this.identifiersById.size() ? this.identifiersById.get(id) : null;
+    }
+
+    /**
+     * Gets the numeric ID for an identifier. IDs are given out in the order identifiers are
+     * first registered, starting at 0. This does not create lazy values.
+     *
+     * @param identifier The identifier to get the ID for.
+     * @return The numeric ID of the identifier, or -1 if it has not been registered.
+     */
+    public int getId (Identifier identifier) {
+
+        return this.ids.getInt(identifier);
+    }
+
+    /**
+     * Gets the amount of identifiers in the registry. This is also the numeric ID which will
+     * be given to the next new identifier.
+     *
+     * @return The amount of identifiers in the registry.
+     */
+    public int size () {
+
+        return this.identifiersById.size();
     }
 
     /**
-     * Gets all of the identifiers currently registered.
+     * Gets all of the identifiers currently registered. The set is a read only view, ordered
+     * by numeric ID, which includes identifiers registered after it was returned.
      *
      * @return A collection of all identifiers that have been used.
      */
     public Set<Identifier> getIdentifiers () {
 
-        return this.values.keySet();
+        return new IdentifierSet();
     }
 
     /**
@@ -62,7 +173,7 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
 
         final List<Identifier> results = new ArrayList<>();
 
-        for (final Identifier id : this.values.keySet()) {
+        for (final Identifier id : this.identifiersById) {
             if (id.getDomain().equals(domain)) {
                 results.add(id);
             }
@@ -107,7 +218,133 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public V getValue (Identifier identifier) {
 
-        return this.values.get(identifier);
+        V value = this.values.get(identifier);
+
+        if (value == null && !this.lazyValues.isEmpty()) {
+
+            final LazyValue<V> lazy = this.lazyValues.get(identifier);
+            value = lazy != null ? lazy.get() : null;
+        }
+
+        if (EpoxideCommons.isTrackingMetrics()) {
+            (value != null ? LOOKUP_HITS : LOOKUP_MISSES).increment();
+        }
+
+        return value;
+    }
+
+    /**
+     * Looks up a batch of identifier strings. The strings are split the same way as
+     * {@link Identifier#Identifier(String)}, but are matched against the registered
+     * identifiers directly, so no Identifier objects are created. Large batches are split
+     * across the common ForkJoinPool, so the registry must not be modified while this runs.
+     * The lookup table is built the first time this is called after registering something.
+     *
+     * @param identifiers The identifier strings to look up. Null entries are skipped.
+     * @param out The array to write the values to, at the same index as their identifier.
+     *        Entries which were not found are set to null.
+     * @return The amount of identifiers which were found.
+     */
+    @SuppressWarnings("unchecked")
+    public int resolveAll (String[] identifiers, V[] out) {
+
+        RegistrySnapshot.checkBatch(identifiers.length, out.length);
+        final RegistrySnapshot<Object> lookup = this.getLookupIndex();
+        return BatchResolveTask.resolve(identifiers.length, (from, to) -> {
+
+            int found = 0;
+
+            for (int position = from; position < to; position++) {
+
+                final Object value = identifiers[position] != null ? lookup.getValue(identifiers[position]) : null;
+                out[position] = value instanceof LazyValue ? ((LazyValue<V>) value).get() : (V) value;
+
+                if (out[position] != null) {
+                    found++;
+                }
+            }
+
+            countLookups(found, to - from - found);
+            return found;
+        });
+    }
+
+    /**
+     * Looks up a batch of numeric IDs. Values are read straight from an array indexed by ID.
+     * Large batches are split across the common ForkJoinPool, so the registry must not be
+     * modified while this runs. The lookup table is built the first time this is called
+     * after registering something.
+     *
+     * @param ids The numeric IDs to look up.
+     * @param out The array to write the values to, at the same index as their ID. Entries
+     *        which were not found are set to null.
+     * @return The amount of IDs which were found.
+     */
+    @SuppressWarnings("unchecked")
+    public int resolveAll (int[] ids, V[] out) {
+
+        RegistrySnapshot.checkBatch(ids.length, out.length);
+        final RegistrySnapshot<Object> lookup = this.getLookupIndex();
+        return BatchResolveTask.resolve(ids.length, (from, to) -> {
+
+            int found = 0;
+
+            for (int position = from; position < to; position++) {
+
+                final Object value = lookup.getValue(ids[position]);
+                out[position] = value instanceof LazyValue ? ((LazyValue<V>) value).get() : (V) value;
+
+                if (out[position] != null) {
+                    found++;
+                }
+            }
+
+            countLookups(found, to - from - found);
+            return found;
+        });
+    }
+
+    /**
+     * Gets the snapshot used by the batch lookups, building it if anything was registered
+     * since it was last built.
+     *
+     * @return The lookup snapshot. Values are either registered values or lazy holders.
+     */
+    private RegistrySnapshot<Object> getLookupIndex () {
+
+        RegistrySnapshot<Object> index = this.lookupIndex;
+
+        if (index == null) {
+
+            final Identifier[] keys = this.identifiersById.toArray(new Identifier[this.identifiersById.size()]);
+            final Object[] values = new Object[keys.length];
+
+            for (int id = 0; id < keys.length; id++) {
+
+                final V value = this.values.get(keys[id]);
+                values[id] = value != null ? value : this.lazyValues.get(keys[id]);
+            }
+
+            index = this.lookupIndex = new RegistrySnapshot<>(keys, values, values);
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds the results of a batch lookup to the lookup counters, if internal metrics are
+     * being tracked.
+     *
+     * @param hits The amount of values which were found.
+     * @param misses The amount of values which were not found.
+     */
+    private static void countLookups (int hits, int misses) {
+
+        if (EpoxideCommons.isTrackingMetrics()) {
+
+            LOOKUP_HITS.add(hits);
+            LOOKUP_MISSES.add(misses);
+        }
     }
 
     /**
@@ -133,6 +370,18 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
         return this.getValue(new Identifier(domain, name));
     }
 
+    /**
+     * Gets the value registered with the identifier which uses a numeric ID.
+     *
+     * @param id The numeric ID to search for.
+     * @return The value that was found. Can be null.
+     */
+    public V getValue (int id) {
+
+        final Identifier identifier = this.getIdentifier(id);
+        return identifier != null ? this.getValue(identifier) : null;
+    }
+
     /**
      * Provides access to the value cache for the registry. If it does not exist, it will be
      * generated.
@@ -142,7 +391,7 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
     public Object[] getValueCache () {
 
         if (this.valueCache == null) {
-            this.valueCache = this.values.values().toArray(new Object[this.values.size()]);
+            this.valueCache = this.getValues().toArray();
         }
 
         return this.valueCache;
@@ -155,7 +404,13 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public List<V> getValues () {
 
-        return new ArrayList<>(this.values.values());
+        if (this.lazyValues.isEmpty()) {
+            return new ArrayList<>(this.values.values());
+        }
+
+        final List<V> values = new ArrayList<>(this.identifiersById.size());
+        this.forEachEntry( (identifier, value) -> values.add(value));
+        return values;
     }
 
     /**
@@ -168,12 +423,13 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
 
         final List<V> values = new ArrayList<>();
 
-        for (final Entry<Identifier, V> entry : this.values.entrySet()) {
-            if (entry.getKey().getDomain().equals(domain)) {
-                values.add(entry.getValue());
+        this.forEachEntry( (identifier, value) -> {
+
+            if (identifier.getDomain().equals(domain)) {
+                values.add(value);
             }
-        }
-        
+        });
+
         return values;
     }
 
@@ -185,8 +441,8 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public boolean hasDomain (String domain) {
 
-        for (final Entry<Identifier, V> entry : this.values.entrySet()) {
-            if (entry.getKey().getDomain().equals(domain)) {
+        for (final Identifier identifier : this.identifiersById) {
+            if (identifier.getDomain().equals(domain)) {
                 return true;
             }
         }
@@ -202,7 +458,7 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public boolean hasIdentifier (Identifier identifier) {
 
-        return this.values.containsKey(identifier);
+        return this.ids.containsKey(identifier);
     }
 
     /**
@@ -215,9 +471,10 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public V registerValue (Identifier identifier, V value) {
 
-        if (this.values.containsKey(identifier)) {
-            this.valueCache = null;
-        }
+        this.valueCache = null;
+        this.lookupIndex = null;
+        this.assignId(identifier);
+        this.lazyValues.remove(identifier);
         this.values.put(identifier, value);
         return value;
     }
@@ -233,7 +490,7 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public V registerValue (String domain, String name, V value) {
 
-        return this.registerValue(new Identifier(domain, name), value);
+        return this.registerValue(this.shareDomain(new Identifier(domain, name)), value);
     }
 
     /**
@@ -246,7 +503,7 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
      */
     public V registerValue (String identifier, V value) {
 
-        return this.registerValue(new Identifier(identifier), value);
+        return this.registerValue(this.shareDomain(new Identifier(identifier)), value);
     }
 
     /**
@@ -261,9 +518,318 @@ public class NamedRegistry<V> implements Iterable<V>, Serializable {
         return this.registerValue(value.getIdentifier(), (V) value);
     }
 
+    /**
+     * Registers a value which will only be created the first time it is looked up. The
+     * identifier and its numeric ID can be used right away. If several threads look up the
+     * value at the same time, the supplier is still only called once. If the supplier throws
+     * an exception, it will be called again on the next lookup. Values which are never looked
+     * up are never created, unless something needs every value such as iteration or
+     * {@link #getValueCache()}.
+     *
+     * @param identifier The identifier to use for the value.
+     * @param supplier A supplier which creates the value.
+     */
+    public void registerLazy (Identifier identifier, Supplier<? extends V> supplier) {
+
+        this.valueCache = null;
+        this.lookupIndex = null;
+        this.assignId(identifier);
+        this.values.remove(identifier);
+        this.lazyValues.put(identifier, new LazyValue<>(supplier));
+    }
+
+    /**
+     * Registers a value which will only be created the first time it is looked up. See
+     * {@link #registerLazy(Identifier, Supplier)}.
+     *
+     * @param identifier The identifier to register the entry under.
+     * @param supplier A supplier which creates the value.
+     */
+    public void registerLazy (String identifier, Supplier<? extends V> supplier) {
+
+        this.registerLazy(this.shareDomain(new Identifier(identifier)), supplier);
+    }
+
+    /**
+     * Gets a 64 bit fingerprint of every identifier in the registry and its numeric ID. Two
+     * registries with the same identifiers and IDs have the same fingerprint, no matter which
+     * process they are in. Values are not included. The fingerprint is updated whenever a new
+     * identifier is registered, so this takes constant time.
+     *
+     * @return The fingerprint of the registry.
+     */
+    public long getFingerprint () {
+
+        return this.fingerprint.getRoot();
+    }
+
+    /**
+     * Gets the digest of the identifiers which use a domain. See {@link #getFingerprint()}.
+     *
+     * @param domain The domain to get the digest of.
+     * @return The digest of the domain, or 0 if nothing uses the domain.
+     */
+    public long getDomainDigest (String domain) {
+
+        return this.fingerprint.getDigest(domain);
+    }
+
+    /**
+     * Gets the digest of every domain in the registry. This can be sent to another process
+     * when the fingerprints do not match, and passed to {@link #getMismatchedDomains(Map)}
+     * there to find which domains need to be sent back.
+     *
+     * @return A sorted map of each domain to its digest.
+     */
+    public SortedMap<String, Long> getDomainDigests () {
+
+        return this.fingerprint.getDigests();
+    }
+
+    /**
+     * Compares the domain digests of this registry with the digests of another registry.
+     *
+     * @param digests The digests of the other registry, from {@link #getDomainDigests()}.
+     * @return The domains which are different, or only exist in one of the registries.
+     */
+    public Set<String> getMismatchedDomains (Map<String, Long> digests) {
+
+        final Set<String> mismatched = new TreeSet<>();
+        final SortedMap<String, Long> local = this.getDomainDigests();
+
+        for (final Entry<String, Long> entry : local.entrySet()) {
+            if (!entry.getValue().equals(digests.get(entry.getKey()))) {
+                mismatched.add(entry.getKey());
+            }
+        }
+
+        for (final String domain : digests.keySet()) {
+            if (!local.containsKey(domain)) {
+                mismatched.add(domain);
+            }
+        }
+
+        return mismatched;
+    }
+
+    /**
+     * Estimates the amount of heap memory used by the registry. This includes the identifiers
+     * and their strings, but not the registered values. See {@link Footprint}.
+     *
+     * @return The estimated size of the registry in bytes.
+     */
+    public long estimateFootprint () {
+
+        final int count = this.identifiersById.size();
+        long size = Footprint.object(8 * Footprint.REFERENCE) + this.values.estimateFootprint() + this.ids.estimateFootprint() + this.fingerprint.estimateFootprint();
+        size += Footprint.hashMap(this.domains.size());
+        size += Footprint.hashMap(this.lazyValues.size()) + this.lazyValues.size() * Footprint.object(2 * Footprint.REFERENCE + 1);
+        size += Footprint.arrayList(count) + count * Footprint.object(2 * Footprint.REFERENCE);
+        size += this.valueCache != null ? Footprint.array(this.valueCache.length, Footprint.REFERENCE) : 0;
+
+        // Strings are only counted once, so shared domain strings are not counted twice.
+        final Map<String, Boolean> strings = new IdentityHashMap<>();
+
+        for (final Identifier identifier : this.identifiersById) {
+
+            if (strings.put(identifier.getDomain(), Boolean.TRUE) == null) {
+                size += Footprint.string(identifier.getDomain());
+            }
+
+            if (strings.put(identifier.getName(), Boolean.TRUE) == null) {
+                size += Footprint.string(identifier.getName());
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Rebuilds the internal tables of the registry at their smallest size. Hash maps never
+     * shrink on their own, so this is useful once registration has finished. Registered
+     * identifiers are kept as they are, so identifiers held by callers still match. Views
+     * such as {@link #getIdentifiers()} do not hold the internal tables, so they keep working
+     * after the registry has been compacted.
+     */
+    public void compact () {
+
+        this.values = new BiMap<>(new HashMap<>(this.values));
+        this.lazyValues = new HashMap<>(this.lazyValues);
+        this.ids.trim();
+        this.identifiersById.trimToSize();
+        this.valueCache = null;
+        this.lookupIndex = null;
+    }
+
+    /**
+     * Creates an immutable copy of the registry which is optimized for lookups. Lazy values
+     * are created first. Later changes to the registry are not reflected in the snapshot. See
+     * {@link RegistrySnapshot}.
+     *
+     * @return An immutable copy of the registry.
+     */
+    public RegistrySnapshot<V> snapshot () {
+
+        final List<Identifier> keys = new ArrayList<>(this.identifiersById.size());
+        final List<Object> values = new ArrayList<>(this.identifiersById.size());
+        final Object[] valuesById = new Object[this.identifiersById.size()];
+
+        this.forEachEntry( (identifier, value) -> {
+
+            keys.add(identifier);
+            values.add(value);
+            valuesById[this.ids.getInt(identifier)] = value;
+        });
+
+        return new RegistrySnapshot<>(keys.toArray(new Identifier[keys.size()]), values.toArray(), valuesById);
+    }
+
+    /**
+     * Gives an identifier the next numeric ID, if it does not already have one.
+     *
+     * @param identifier The identifier to give an ID.
+     */
+    private void assignId (Identifier identifier) {
+
+        if (!this.ids.containsKey(identifier)) {
+
+            this.fingerprint.add(identifier, this.identifiersById.size());
+            this.ids.put(identifier, this.identifiersById.size());
+            this.identifiersById.add(identifier);
+            this.domains.putIfAbsent(identifier.getDomain(), identifier.getDomain());
+        }
+    }
+
+    /**
+     * Makes an identifier created by the registry use the domain string which is already
+     * shared by other identifiers in the same domain.
+     *
+     * @param identifier The newly created identifier.
+     * @return An equal identifier which uses the shared domain string, or the same identifier
+     *         if its domain has not been registered yet.
+     */
+    private Identifier shareDomain (Identifier identifier) {
+
+        final String domain = this.domains.get(identifier.getDomain());
+        return domain == null || domain == identifier.getDomain() ? identifier : new Identifier(domain, identifier.getName());
+    }
+
+    /**
+     * Passes every identifier and value to a consumer. Lazy values are created if needed, and
+     * skipped if they are null.
+     *
+     * @param consumer The consumer to pass entries to.
+     */
+    private void forEachEntry (BiConsumer<Identifier, V> consumer) {
+
+        for (final Entry<Identifier, V> entry : this.values.entrySet()) {
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+
+        for (final Entry<Identifier, LazyValue<V>> entry : this.lazyValues.entrySet()) {
+
+            final V value = entry.getValue().get();
+
+            if (value != null) {
+                consumer.accept(entry.getKey(), value);
+            }
+        }
+    }
+
     @Override
     public Iterator<V> iterator () {
 
-        return this.values.values().iterator();
+        return this.lazyValues.isEmpty() ? this.values.values().iterator() : this.getValues().iterator();
+    }
+
+    /**
+     * A read only view of the registered identifiers, returned by {@link #getIdentifiers()}.
+     * It reads from {@link #identifiersById} and {@link #ids}, which are never replaced, so
+     * the view stays current when the registry is compacted.
+     */
+    private final class IdentifierSet extends AbstractSet<Identifier> {
+
+        @Override
+        public Iterator<Identifier> iterator () {
+
+            return Collections.unmodifiableList(NamedRegistry.this.identifiersById).iterator();
+        }
+
+        @Override
+        public int size () {
+
+            return NamedRegistry.this.identifiersById.size();
+        }
+
+        @Override
+        public boolean contains (Object identifier) {
+
+            return NamedRegistry.this.ids.containsKey(identifier);
+        }
+    }
+
+    /**
+     * Holds a value which is created the first time it is needed.
+     */
+    private static final class LazyValue<V> {
+
+        /**
+         * The supplier which creates the value. This is cleared once the value is created.
+         */
+        private Supplier<? extends V> supplier;
+
+        /**
+         * The created value.
+         */
+        private V value;
+
+        /**
+         * Whether or not the value has been created. This is volatile so the value is visible
+         * to other threads once it is set.
+         */
+        private volatile boolean created;
+
+        /**
+         * Constructs a new lazy value.
+         *
+         * @param supplier The supplier which creates the value.
+         */
+        LazyValue (Supplier<? extends V> supplier) {
+
+            this.supplier = supplier;
+        }
+
+        /**
+         * Gets the value, creating it if it has not been created yet.
+         *
+         * @return The value.
+         */
+        V get () {
+
+            if (!this.created) {
+
+                synchronized (this) {
+
+                    if (!this.created) {
+
+                        this.value = this.supplier.get();
+                        this.supplier = null;
+                        this.created = true;
+                    }
+                }
+            }
+
+            return this.value;
+        }
+
+        /**
+         * Checks if the value has been created.
+         *
+         * @return Whether or not the value has been created.
+         */
+        boolean isCreated () {
+
+            return this.created;
+        }
     }
 }
\ No newline at end of file
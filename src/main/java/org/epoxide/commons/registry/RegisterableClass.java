@@ -1,5 +1,9 @@
 package org.epoxide.commons.registry;
 
+import java.util.function.Supplier;
+
+import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.reflection.AccessorGenerator;
 import org.epoxide.commons.reflection.ReflectionUtils;
 
 /**
@@ -37,13 +41,35 @@ public class RegisterableClass<T> extends Registerable<T> {
 
     /**
      * Attempts to construct the contained class using arbitrary arguments. Arguments only
-     * support primitives.
+     * support primitives. When there are no arguments, a generated constructor from
+     * {@link AccessorGenerator} is used, which avoids the overhead of reflection. Only public
+     * constructors are used. If the constructor throws an exception, it is reported and null
+     * is returned.
      *
      * @param args The arguments used to construct the class.
-     * @return The constructed instance.
+     * @return The constructed instance, or null if it failed.
      */
     public T construct (Object... args) {
 
+        if (args.length == 0) {
+
+            final Supplier<? extends T> constructor = AccessorGenerator.getConstructor(this.getContainedClass());
+
+            if (constructor != null) {
+
+                try {
+
+                    return constructor.get();
+                }
+
+                catch (final Exception e) {
+
+                    EpoxideCommons.getLazyLogger().warning( () -> "Could not construct for " + this.getContainedClass().getName(), e);
+                    return null;
+                }
+            }
+        }
+
         return ReflectionUtils.constructClass(this.getContainedClass(), args);
     }
 }
\ No newline at end of file
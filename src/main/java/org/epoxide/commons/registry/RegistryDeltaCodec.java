@@ -0,0 +1,335 @@
+package org.epoxide.commons.registry;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Encodes the identifiers added to a {@link NamedRegistry} into a compact binary delta, which
+ * can be applied to a copy of the registry in another process so that both use the same
+ * numeric IDs. Deltas are written directly into a caller provided ByteBuffer, which can be
+ * reused, and are applied by registering the new identifiers one at a time.
+ *
+ * The format groups entries into runs which share a domain, so each domain is written once
+ * per delta. Names within a run are sorted and front coded, meaning each name only stores the
+ * length of the prefix it shares with the previous name, followed by the rest of the name.
+ * All numbers are unsigned varints, and IDs are stored as the zig zag encoded difference from
+ * the previous ID. Strings are stored as a varint length followed by one varint per char, so
+ * plain ASCII takes one byte per char.
+ *
+ * <pre>
+ * delta   = varint(entryCount) varint(runCount) run*
+ * run     = string(domain) varint(entryCount) entry*
+ * entry   = varint(zigzag(id - previousId)) varint(sharedPrefix) string(suffix)
+ * string  = varint(length) varint(char)*
+ * </pre>
+ */
+public final class RegistryDeltaCodec {
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private RegistryDeltaCodec () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Writes every identifier with a numeric ID of at least fromId to a buffer. Pass 0 to
+     * write the whole registry, and the returned value to write only what was added since.
+     *
+     * @param registry The registry to write.
+     * @param fromId The first numeric ID to write.
+     * @param buffer The buffer to write to, starting at its position.
+     * @return The size of the registry, which can be used as fromId for the next delta.
+     * @throws IllegalArgumentException If fromId is negative, or larger than the size of the
+     *         registry.
+     * @throws java.nio.BufferOverflowException If the buffer is too small. The position of
+     *         the buffer is undefined afterwards.
+     */
+    public static int write (NamedRegistry<?> registry, int fromId, ByteBuffer buffer) {
+
+        final int size = registry.size();
+
+        if (fromId < 0 || fromId > size) {
+            throw new IllegalArgumentException("The first ID must be between 0 and " + size + ", got " + fromId);
+        }
+
+        final int count = size - fromId;
+        final Identifier[] entries = new Identifier[count];
+
+        for (int index = 0; index < count; index++) {
+            entries[index] = registry.getIdentifier(fromId + index);
+        }
+
+        Arrays.sort(entries, (first, second) -> {
+
+            final int domain = first.getDomain().compareTo(second.getDomain());
+            return domain != 0 ? domain : first.getName().compareTo(second.getName());
+        });
+
+        int runs = 0;
+
+        for (int index = 0; index < count; index++) {
+            if (index == 0 || !entries[index].getDomain().equals(entries[index - 1].getDomain())) {
+                runs++;
+            }
+        }
+
+        writeVarInt(buffer, count);
+        writeVarInt(buffer, runs);
+
+        int previousId = 0;
+        int start = 0;
+
+        while (start < count) {
+
+            final String domain = entries[start].getDomain();
+            int end = start + 1;
+
+            while (end < count && entries[end].getDomain().equals(domain)) {
+                end++;
+            }
+
+            writeString(buffer, domain, 0);
+            writeVarInt(buffer, end - start);
+            String previousName = "";
+
+            for (int index = start; index < end; index++) {
+
+                final int id = registry.getId(entries[index]);
+                final String name = entries[index].getName();
+                final int shared = sharedPrefix(previousName, name);
+
+                writeVarInt(buffer, id - previousId << 1 ^ id - previousId >> 31);
+                writeVarInt(buffer, shared);
+                writeString(buffer, name, shared);
+                previousId = id;
+                previousName = name;
+            }
+
+            start = end;
+        }
+
+        return size;
+    }
+
+    /**
+     * Applies a delta to a registry. Each new identifier is registered lazily, using the
+     * factory to create its value the first time it is looked up. Identifiers which the
+     * registry already has with the same numeric ID are skipped, so applying the same delta
+     * twice is safe. The whole delta is checked before anything is registered, so the
+     * registry is not changed if this throws an exception.
+     *
+     * @param registry The registry to apply the delta to.
+     * @param buffer The buffer to read the delta from, starting at its position.
+     * @param factory A function which creates the value for an identifier.
+     * @return The amount of identifiers which were added.
+     * @throws IllegalStateException If the delta does not match the registry, because an
+     *         identifier has a different numeric ID, or an earlier delta was not applied.
+     * @throws IllegalArgumentException If the delta is not valid.
+     */
+    public static <V> int apply (NamedRegistry<V> registry, ByteBuffer buffer, Function<Identifier, ? extends V> factory) {
+
+        final Identifier[] entries;
+        final int[] ids;
+
+        try {
+
+            final int count = readVarInt(buffer);
+            final int runs = readVarInt(buffer);
+
+            // Every entry takes at least three bytes, so larger counts can not be valid.
+            if (count < 0 || count > buffer.remaining() / 3) {
+                throw new IllegalArgumentException("Delta claims " + count + " entries but only has " + buffer.remaining() + " bytes left");
+            }
+
+            entries = new Identifier[count];
+            ids = new int[count];
+            final StringBuilder builder = new StringBuilder();
+            int previousId = 0;
+            int index = 0;
+
+            for (int run = 0; run < runs; run++) {
+
+                builder.setLength(0);
+                final String domain = readString(buffer, builder).toString();
+                final int runEnd = index + readVarInt(buffer);
+                builder.setLength(0);
+
+                for (; index < runEnd; index++) {
+
+                    final int zigzag = readVarInt(buffer);
+                    previousId += zigzag >>> 1 ^ -(zigzag & 1);
+                    final int shared = readVarInt(buffer);
+
+                    if (shared > builder.length()) {
+                        throw new IllegalArgumentException("Shared prefix " + shared + " is longer than the previous name");
+                    }
+
+                    builder.setLength(shared);
+                    ids[index] = previousId;
+                    entries[index] = new Identifier(domain, readString(buffer, builder).toString());
+                }
+            }
+
+            if (index != count) {
+                throw new IllegalArgumentException("Expected " + count + " entries but found " + index);
+            }
+        }
+
+        catch (final BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+
+            throw new IllegalArgumentException("Invalid registry delta", e);
+        }
+
+        // Entries must be registered in ID order, so the registry gives out the same IDs.
+        final Integer[] order = new Integer[entries.length];
+
+        for (int index = 0; index < order.length; index++) {
+            order[index] = index;
+        }
+
+        Arrays.sort(order, (first, second) -> Integer.compare(ids[first], ids[second]));
+
+        // The whole delta is checked before anything is registered, so a bad delta is never
+        // partly applied.
+        final Set<Identifier> added = new HashSet<>();
+        final List<Identifier> pending = new ArrayList<>();
+
+        for (int position = 0; position < order.length; position++) {
+
+            final int index = order[position];
+            final Identifier identifier = entries[index];
+
+            if (position > 0 && ids[order[position - 1]] == ids[index]) {
+                throw new IllegalArgumentException("Invalid registry delta, ID " + ids[index] + " is used more than once");
+            }
+
+            if (!added.add(identifier)) {
+                throw new IllegalArgumentException("Invalid registry delta, " + identifier + " is used more than once");
+            }
+
+            final int existing = registry.getId(identifier);
+
+            if (existing == ids[index]) {
+                continue;
+            }
+
+            final int expected = registry.size() + pending.size();
+
+            if (existing != -1 || ids[index] != expected) {
+                throw new IllegalStateException("Registry is out of sync. " + identifier + " has ID " + ids[index] + " but the registry expected " + (existing != -1 ? existing : expected));
+            }
+
+            pending.add(identifier);
+        }
+
+        for (final Identifier identifier : pending) {
+            registry.registerLazy(identifier, () -> factory.apply(identifier));
+        }
+
+        return pending.size();
+    }
+
+    /**
+     * Writes an unsigned varint. Each byte holds seven bits, and the high bit is set when
+     * more bytes follow.
+     *
+     * @param buffer The buffer to write to.
+     * @param value The value to write.
+     */
+    private static void writeVarInt (ByteBuffer buffer, int value) {
+
+        while ((value & ~0x7F) != 0) {
+
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param buffer The buffer to read from.
+     * @return The value which was read.
+     */
+    private static int readVarInt (ByteBuffer buffer) {
+
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+
+            final byte read = buffer.get();
+            value |= (read & 0x7F) << shift;
+
+            if (read >= 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    /**
+     * Writes the end of a string.
+     *
+     * @param buffer The buffer to write to.
+     * @param string The string to write.
+     * @param start The index of the first char to write.
+     */
+    private static void writeString (ByteBuffer buffer, String string, int start) {
+
+        writeVarInt(buffer, string.length() - start);
+
+        for (int index = start; index < string.length(); index++) {
+            writeVarInt(buffer, string.charAt(index));
+        }
+    }
+
+    /**
+     * Reads a string, appending it to a builder.
+     *
+     * @param buffer The buffer to read from.
+     * @param builder The builder to append to.
+     * @return The builder, for convenience.
+     */
+    private static StringBuilder readString (ByteBuffer buffer, StringBuilder builder) {
+
+        final int length = readVarInt(buffer);
+
+        for (int index = 0; index < length; index++) {
+            builder.append((char) readVarInt(buffer));
+        }
+
+        return builder;
+    }
+
+    /**
+     * Gets the length of the prefix two strings share.
+     *
+     * @param first The first string.
+     * @param second The second string.
+     * @return The amount of chars at the start of both strings which are the same.
+     */
+    private static int sharedPrefix (String first, String second) {
+
+        final int max = Math.min(first.length(), second.length());
+        int index = 0;
+
+        while (index < max && first.charAt(index) == second.charAt(index)) {
+            index++;
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,132 @@
+package org.epoxide.commons.registry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.epoxide.commons.collections.Footprint;
+
+/**
+ * Keeps a 64 bit fingerprint of the identifiers in a registry and their numeric IDs. The
+ * fingerprint is a two level tree. Each domain has a digest which is the sum of the hashes of
+ * its entries, and the root is the sum of a hash of each domain and its digest. Sums allow
+ * both levels to be updated in constant time when an entry is added. All hashes are computed
+ * from the characters of the identifiers, so they are the same in every process.
+ */
+final class RegistryFingerprint {
+
+    /**
+     * The FNV-1a 64 bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /**
+     * The FNV-1a 64 bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * The digest of each domain.
+     */
+    private final Map<String, Long> domains = new HashMap<>();
+
+    /**
+     * The root of the fingerprint.
+     */
+    private long root;
+
+    /**
+     * Adds an entry to the fingerprint.
+     *
+     * @param identifier The identifier of the entry.
+     * @param id The numeric ID of the entry.
+     */
+    void add (Identifier identifier, int id) {
+
+        final String domain = identifier.getDomain();
+        final long domainHash = hash(domain);
+        final Long previous = this.domains.get(domain);
+        final long digest = (previous != null ? previous : 0) + mix(domainHash ^ mix(hash(identifier.getName()) + id));
+
+        if (previous != null) {
+            this.root -= mix(domainHash + previous);
+        }
+
+        this.root += mix(domainHash + digest);
+        this.domains.put(domain, digest);
+    }
+
+    /**
+     * Gets the root of the fingerprint.
+     *
+     * @return The fingerprint of every entry.
+     */
+    long getRoot () {
+
+        return this.root;
+    }
+
+    /**
+     * Gets the digest of a domain.
+     *
+     * @param domain The domain.
+     * @return The digest of the domain, or 0 if it has no entries.
+     */
+    long getDigest (String domain) {
+
+        final Long digest = this.domains.get(domain);
+        return digest != null ? digest : 0;
+    }
+
+    /**
+     * Gets the digest of every domain.
+     *
+     * @return A sorted copy of the digest of every domain.
+     */
+    SortedMap<String, Long> getDigests () {
+
+        return new TreeMap<>(this.domains);
+    }
+
+    /**
+     * Estimates the amount of heap memory used by the fingerprint, not including the domain
+     * strings. See {@link Footprint}.
+     *
+     * @return The estimated size of the fingerprint in bytes.
+     */
+    long estimateFootprint () {
+
+        return Footprint.object(Footprint.REFERENCE + 8) + Footprint.hashMap(this.domains.size()) + this.domains.size() * Footprint.object(8);
+    }
+
+    /**
+     * Calculates a stable 64 bit hash of a string using FNV-1a.
+     *
+     * @param string The string to hash.
+     * @return The hash of the string.
+     */
+    static long hash (String string) {
+
+        long hash = FNV_OFFSET;
+
+        for (int index = 0; index < string.length(); index++) {
+            hash = (hash ^ string.charAt(index)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * The SplitMix64 output function. Scrambles all bits of the input.
+     *
+     * @param x The value to mix.
+     * @return The mixed value.
+     */
+    private static long mix (long x) {
+
+        x = (x ^ x >>> 30) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ x >>> 27) * 0x94D049BB133111EBL;
+        return x ^ x >>> 31;
+    }
+}
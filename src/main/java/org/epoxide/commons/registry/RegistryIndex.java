@@ -0,0 +1,181 @@
+package org.epoxide.commons.registry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.reflection.ReflectionUtils;
+
+/**
+ * Fills a {@link NamedRegistry} using the index written by {@link RegistryIndexProcessor}.
+ * Only the small index files are read up front. The indexed classes are not loaded until their
+ * value is first looked up in the registry, so classes which are never used cost nothing.
+ */
+public final class RegistryIndex {
+
+    /**
+     * The location of the index file, relative to the root of the classpath.
+     */
+    public static final String INDEX_FILE = "META-INF/epoxide/registry.index";
+
+    /**
+     * Utility classes, such as this one, are not meant to be instantiated. Java adds an
+     * implicit public constructor to every class which does not define at lease one
+     * explicitly. Hence why this constructor was added.
+     */
+    private RegistryIndex () {
+
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Adds all indexed classes which do not specify a registry name to a registry. Uses the
+     * context class loader of the current thread.
+     *
+     * @param registry The registry to fill.
+     * @param type The type of value held by the registry.
+     * @return The amount of identifiers which were added.
+     */
+    public static <V> int load (NamedRegistry<V> registry, Class<V> type) {
+
+        return load(registry, type, "");
+    }
+
+    /**
+     * Adds all indexed classes with a specific registry name to a registry. Uses the context
+     * class loader of the current thread.
+     *
+     * @param registry The registry to fill.
+     * @param type The type of value held by the registry.
+     * @param registryName The registry name used in {@link Indexed#registry()}.
+     * @return The amount of identifiers which were added.
+     */
+    public static <V> int load (NamedRegistry<V> registry, Class<V> type, String registryName) {
+
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return load(registry, type, registryName, loader != null ? loader : RegistryIndex.class.getClassLoader());
+    }
+
+    /**
+     * Adds all indexed classes with a specific registry name to a registry. The identifiers are
+     * available right away, while each class is only loaded and constructed when its value is
+     * first looked up. Classes which can not be loaded, or which are not of the expected type,
+     * are reported at that point and their value will be null.
+     *
+     * @param registry The registry to fill.
+     * @param type The type of value held by the registry.
+     * @param registryName The registry name used in {@link Indexed#registry()}.
+     * @param loader The class loader to find index files and classes with.
+     * @return The amount of identifiers which were added.
+     */
+    public static <V> int load (NamedRegistry<V> registry, Class<V> type, String registryName, ClassLoader loader) {
+
+        int count = 0;
+
+        try {
+
+            final Enumeration<URL> resources = loader.getResources(INDEX_FILE);
+
+            while (resources.hasMoreElements()) {
+                count += load(registry, type, registryName, loader, resources.nextElement());
+            }
+        }
+
+        catch (final IOException e) {
+
+            EpoxideCommons.getLazyLogger().warning( () -> "Could not find registry indexes for " + registryName, e);
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds the matching entries from a single index file to a registry.
+     *
+     * @param registry The registry to fill.
+     * @param type The type of value held by the registry.
+     * @param registryName The registry name to look for.
+     * @param loader The class loader to load classes with.
+     * @param url The location of the index file.
+     * @return The amount of identifiers which were added.
+     */
+    private static <V> int load (NamedRegistry<V> registry, Class<V> type, String registryName, ClassLoader loader, URL url) {
+
+        int count = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                final int first = line.indexOf('\t');
+                final int second = line.indexOf('\t', first + 1);
+
+                if (first < 0 || second < 0) {
+
+                    final String invalid = line;
+                    EpoxideCommons.getLazyLogger().warning( () -> "Skipping invalid line " + invalid + " in " + url);
+                    continue;
+                }
+
+                if (registryName.equals(line.substring(0, first))) {
+
+                    final Identifier identifier = new Identifier(line.substring(first + 1, second));
+                    final String className = line.substring(second + 1);
+                    registry.registerLazy(identifier, () -> construct(identifier, className, type, loader));
+                    count++;
+                }
+            }
+        }
+
+        catch (final IOException e) {
+
+            EpoxideCommons.getLazyLogger().warning( () -> "Could not read registry index " + url, e);
+        }
+
+        return count;
+    }
+
+    /**
+     * Loads and constructs an indexed class.
+     *
+     * @param identifier The identifier the class was indexed with.
+     * @param className The binary name of the class.
+     * @param type The type of value held by the registry.
+     * @param loader The class loader to load the class with.
+     * @return The constructed value, or null if it could not be constructed.
+     */
+    private static <V> V construct (Identifier identifier, String className, Class<V> type, ClassLoader loader) {
+
+        try {
+
+            final Class<?> clazz = Class.forName(className, true, loader);
+
+            if (!type.isAssignableFrom(clazz)) {
+
+                EpoxideCommons.getLazyLogger().warning( () -> "Indexed class " + className + " for " + identifier + " is not a " + type.getName());
+                return null;
+            }
+
+            final V value = type.cast(ReflectionUtils.constructClass(clazz));
+
+            if (value instanceof IRegisterable) {
+                ((IRegisterable<?>) value).setIdentifier(identifier);
+            }
+
+            return value;
+        }
+
+        catch (final ClassNotFoundException | LinkageError e) {
+
+            EpoxideCommons.getLazyLogger().warning( () -> "Could not load indexed class " + className + " for " + identifier, e);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,179 @@
+package org.epoxide.commons.registry;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * An annotation processor which writes an index of all classes annotated with
+ * {@link Indexed}. The index is written to {@link RegistryIndex#INDEX_FILE}, with one line per
+ * class holding the registry name, the identifier, and the binary name of the class separated
+ * by tabs. The processor is registered as a service, so it runs automatically for any project
+ * which has this library on the compile classpath.
+ */
+public class RegistryIndexProcessor extends AbstractProcessor {
+
+    /**
+     * The lines of the index, sorted so the output does not depend on compilation order.
+     */
+    private final Set<String> lines = new TreeSet<>();
+
+    /**
+     * The classes which contributed to the index.
+     */
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes () {
+
+        final Set<String> types = new TreeSet<>();
+        types.add(Indexed.class.getCanonicalName());
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion () {
+
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        final TypeMirror registerable = this.processingEnv.getTypeUtils().erasure(this.processingEnv.getElementUtils().getTypeElement(IRegisterable.class.getCanonicalName()).asType());
+
+        for (final Element element : roundEnv.getElementsAnnotatedWith(Indexed.class)) {
+
+            final Indexed indexed = element.getAnnotation(Indexed.class);
+
+            if (this.isValid(element, indexed, registerable)) {
+
+                final String className = this.processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+                this.lines.add(indexed.registry() + '\t' + indexed.value() + '\t' + className);
+                this.originatingElements.add(element);
+            }
+        }
+
+        if (roundEnv.processingOver() && !this.lines.isEmpty()) {
+            this.writeIndex();
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that an annotated element can be loaded from the index, and reports an error if
+     * it can not.
+     *
+     * @param element The annotated element.
+     * @param indexed The annotation on the element.
+     * @param registerable The erased type of IRegisterable.
+     * @return Whether or not the element can be added to the index.
+     */
+    private boolean isValid (Element element, Indexed indexed, TypeMirror registerable) {
+
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT) || !element.getModifiers().contains(Modifier.PUBLIC)) {
+
+            this.error(element, "Indexed types must be public classes which are not abstract.");
+            return false;
+        }
+
+        if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE && !element.getModifiers().contains(Modifier.STATIC)) {
+
+            this.error(element, "Indexed types can not be inner classes.");
+            return false;
+        }
+
+        if (!this.processingEnv.getTypeUtils().isAssignable(element.asType(), registerable)) {
+
+            this.error(element, "Indexed types must implement " + IRegisterable.class.getName() + ".");
+            return false;
+        }
+
+        if (!hasDefaultConstructor((TypeElement) element)) {
+
+            this.error(element, "Indexed types must have a public constructor with no arguments.");
+            return false;
+        }
+
+        // Identifier ignores domains shorter than two characters, so they are rejected here.
+        if (indexed.value().indexOf(':') < 2 || indexed.value().indexOf('\t') >= 0 || indexed.registry().indexOf('\t') >= 0) {
+
+            this.error(element, "Invalid identifier " + indexed.value() + ". Identifiers must use the domain:name format, with a domain of at least two characters.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes all of the collected lines to the index file.
+     */
+    private void writeIndex () {
+
+        try {
+
+            final FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RegistryIndex.INDEX_FILE, this.originatingElements.toArray(new Element[0]));
+
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+
+                for (final String line : this.lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        }
+
+        catch (final IOException e) {
+
+            this.processingEnv.getMessager().printMessage(Kind.ERROR, "Could not write the registry index. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reports an error for an element.
+     *
+     * @param element The element which caused the error.
+     * @param message The error message.
+     */
+    private void error (Element element, String message) {
+
+        this.processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    /**
+     * Checks if a class has a public constructor with no arguments.
+     *
+     * @param type The class to check.
+     * @return Whether or not the class has a public constructor with no arguments.
+     */
+    private static boolean hasDefaultConstructor (TypeElement type) {
+
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
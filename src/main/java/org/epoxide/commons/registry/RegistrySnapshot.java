@@ -0,0 +1,545 @@
+package org.epoxide.commons.registry;
+
+import java.util.Arrays;
+
+import org.epoxide.commons.EpoxideCommons;
+import org.epoxide.commons.collections.LongSet;
+
+/**
+ * An immutable copy of a {@link NamedRegistry}, intended for hot read paths. Entries are
+ * stored in a flat array using a hash and displace layout, where every bucket of keys has a
+ * small seed which places each of its keys in a unique slot. Finding a key therefore never
+ * takes more than one probe, and no locking is needed. Each key is stored next to its value,
+ * so a lookup usually touches a single cache line of the table.
+ *
+ * Lookups first use the identity hash of the identifier, so code which holds on to the same
+ * Identifier instances that were registered never compares strings. Other identifiers which
+ * are equal to a registered one fall back to a second table which uses
+ * {@link Identifier#hashCode()}. Strings can be looked up directly in that table, without
+ * creating an Identifier.
+ */
+public final class RegistrySnapshot<V> {
+
+    /**
+     * The multiplier used to spread hashes. This is the 64 bit golden ratio.
+     */
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The multiplier used to spread the seed of each bucket.
+     */
+    private static final long SEED_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * The maximum amount of seeds tried for a bucket before the table is made larger.
+     */
+    private static final int MAX_SEED = 1 << 12;
+
+    /**
+     * The table which is keyed by the identity hash of each identifier.
+     */
+    private final Table identityTable;
+
+    /**
+     * The table which is keyed by the hash code of each identifier.
+     */
+    private final Table equalityTable;
+
+    /**
+     * The values of the registry, where the index of each value is its numeric ID.
+     */
+    private final Object[] valuesById;
+
+    /**
+     * The amount of entries in the snapshot.
+     */
+    private final int size;
+
+    /**
+     * Constructs a new snapshot. Use {@link NamedRegistry#snapshot()} instead.
+     *
+     * @param keys The identifiers in the snapshot.
+     * @param values The value for each identifier.
+     * @param valuesById The values of the registry, indexed by numeric ID.
+     */
+    RegistrySnapshot (Identifier[] keys, Object[] values, Object[] valuesById) {
+
+        this.size = keys.length;
+        this.valuesById = valuesById;
+        this.identityTable = new Table(keys, values, true);
+        this.equalityTable = new Table(keys, values, false);
+    }
+
+    /**
+     * Gets the value registered with the passed identifier.
+     *
+     * @param identifier The identifier to search for.
+     * @return The value that was found. Can be null.
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue (Identifier identifier) {
+
+        final Table identity = this.identityTable;
+        final int slot = identity.getSlot(System.identityHashCode(identifier) * MULTIPLIER);
+
+        if (identity.entries[slot] == identifier) {
+            return (V) identity.entries[slot + 1];
+        }
+
+        return identifier != null ? (V) this.equalityTable.getEqual(identifier) : null;
+    }
+
+    /**
+     * Gets the value registered with the passed identifier string. The string is split the
+     * same way as {@link Identifier#Identifier(String)}, but no Identifier is created.
+     *
+     * @param identifier The identifier to search for.
+     * @return The value that was found. Can be null.
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue (String identifier) {
+
+        final int separator = identifier.indexOf(':');
+
+        // Matches Identifier, which only uses the domain when it is at least two chars long.
+        final int domainEnd = separator > 1 ? separator : -1;
+        final String defaultDomain = domainEnd < 0 ? EpoxideCommons.getDefaultName() : null;
+        final int hash = (defaultDomain != null ? defaultDomain.hashCode() : hash(identifier, 0, domainEnd)) + hash(identifier, separator + 1, identifier.length());
+        return (V) this.equalityTable.getEqual(identifier, defaultDomain, domainEnd, separator + 1, hash);
+    }
+
+    /**
+     * Looks up a batch of identifier strings. See {@link #getValue(String)}. Large batches are
+     * split across the common ForkJoinPool.
+     *
+     * @param identifiers The identifier strings to look up. Null entries are skipped.
+     * @param out The array to write the values to, at the same index as their identifier.
+     *        Entries which were not found are set to null.
+     * @return The amount of identifiers which were found.
+     */
+    public int resolveAll (String[] identifiers, V[] out) {
+
+        checkBatch(identifiers.length, out.length);
+        return BatchResolveTask.resolve(identifiers.length, (from, to) -> {
+
+            int found = 0;
+
+            for (int index = from; index < to; index++) {
+
+                out[index] = identifiers[index] != null ? this.getValue(identifiers[index]) : null;
+
+                if (out[index] != null) {
+                    found++;
+                }
+            }
+
+            return found;
+        });
+    }
+
+    /**
+     * Looks up a batch of numeric IDs. See {@link #getValue(int)}.
+     *
+     * @param ids The numeric IDs to look up.
+     * @param out The array to write the values to, at the same index as their ID. Entries
+     *        which were not found are set to null.
+     * @return The amount of IDs which were found.
+     */
+    public int resolveAll (int[] ids, V[] out) {
+
+        checkBatch(ids.length, out.length);
+        return BatchResolveTask.resolve(ids.length, (from, to) -> {
+
+            int found = 0;
+
+            for (int index = from; index < to; index++) {
+
+                out[index] = this.getValue(ids[index]);
+
+                if (out[index] != null) {
+                    found++;
+                }
+            }
+
+            return found;
+        });
+    }
+
+    /**
+     * Gets the value registered with the identifier which uses a numeric ID.
+     *
+     * @param id The numeric ID to search for.
+     * @return The value that was found. Can be null.
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue (int id) {
+
+        return id >= 0 && id < this.valuesById.length ? (V) this.valuesById[id] : null;
+    }
+
+    /**
+     * Checks if an identifier is in the snapshot.
+     *
+     * @param identifier The Identifier to search for.
+     * @return Whether or not the identifier was found.
+     */
+    public boolean hasIdentifier (Identifier identifier) {
+
+        return this.getValue(identifier) != null;
+    }
+
+    /**
+     * Gets the amount of entries in the snapshot.
+     *
+     * @return The amount of entries in the snapshot.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Checks that the output array of a batch is large enough.
+     *
+     * @param length The size of the batch.
+     * @param outLength The length of the output array.
+     */
+    static void checkBatch (int length, int outLength) {
+
+        if (outLength < length) {
+            throw new IllegalArgumentException("The output array has " + outLength + " entries but there are " + length + " lookups");
+        }
+    }
+
+    /**
+     * Calculates the hash code of part of a string, the same way as {@link String#hashCode()}.
+     *
+     * @param string The string.
+     * @param start The index of the first char.
+     * @param end The index after the last char.
+     * @return The hash code of the part of the string.
+     */
+    private static int hash (String string, int start, int end) {
+
+        int hash = 0;
+
+        for (int index = start; index < end; index++) {
+            hash = 31 * hash + string.charAt(index);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Checks if an identifier is equal to an identifier string.
+     *
+     * @param key The identifier.
+     * @param text The identifier string.
+     * @param defaultDomain The domain to use if the string does not have one, otherwise null.
+     * @param domainEnd The index after the domain in the string.
+     * @param nameStart The index of the first char of the name in the string.
+     * @return Whether or not the identifier is equal to the string.
+     */
+    private static boolean matches (Identifier key, String text, String defaultDomain, int domainEnd, int nameStart) {
+
+        final String domain = key.getDomain();
+        final String name = key.getName();
+
+        if (name.length() != text.length() - nameStart || !text.regionMatches(nameStart, name, 0, name.length())) {
+            return false;
+        }
+
+        return defaultDomain != null ? defaultDomain.equals(domain) : domain.length() == domainEnd && text.regionMatches(0, domain, 0, domainEnd);
+    }
+
+    /**
+     * Calculates the hash used for an identifier in a table.
+     *
+     * @param identifier The identifier to hash.
+     * @param identity Whether to use the identity hash or the hash code.
+     * @return The hash for the identifier.
+     */
+    private static long hash (Identifier identifier, boolean identity) {
+
+        return (identity ? System.identityHashCode(identifier) : identifier.hashCode()) * MULTIPLIER;
+    }
+
+    /**
+     * A single hash and displace table.
+     */
+    private static final class Table {
+
+        /**
+         * Whether the table uses identity hashes.
+         */
+        private final boolean identity;
+
+        /**
+         * The seed for each bucket.
+         */
+        private final int[] seeds;
+
+        /**
+         * The amount of bits to shift a hash by to get its bucket.
+         */
+        private final int bucketShift;
+
+        /**
+         * The amount of bits to shift a mixed hash by to get its slot.
+         */
+        private final int slotShift;
+
+        /**
+         * The keys and values of the table. Keys are at even indexes, and are followed by
+         * their value. Unused slots are null.
+         */
+        private final Object[] entries;
+
+        /**
+         * Keys which have the same hash as another key, and so can not be given their own
+         * slot. These are searched when a key is not found in its slot. For identity tables
+         * this is always empty, as the equality table is searched instead.
+         */
+        private final Object[] overflow;
+
+        /**
+         * Builds a new table.
+         *
+         * @param keys The identifiers to add.
+         * @param values The value for each identifier.
+         * @param identity Whether to use identity hashes or hash codes.
+         */
+        Table (Identifier[] keys, Object[] values, boolean identity) {
+
+            this.identity = identity;
+
+            final long[] hashes = new long[keys.length];
+            final LongSet seen = new LongSet(keys.length);
+            final int[] placed = new int[keys.length];
+            final int[] overflow = new int[keys.length];
+            int placedCount = 0;
+            int overflowCount = 0;
+
+            // Keys with the same hash can never be placed in different slots.
+            for (int index = 0; index < keys.length; index++) {
+
+                hashes[index] = hash(keys[index], identity);
+
+                if (seen.add(hashes[index])) {
+                    placed[placedCount++] = index;
+                }
+
+                else {
+                    overflow[overflowCount++] = index;
+                }
+            }
+
+            final int bucketBits = bits(Math.max(2, placedCount / 4));
+            int slotBits = bits(Math.max(2, placedCount * 2));
+            int[] seeds;
+
+            while ((seeds = place(hashes, placed, placedCount, bucketBits, slotBits)) == null) {
+                slotBits++;
+            }
+
+            this.seeds = seeds;
+            this.bucketShift = 64 - bucketBits;
+            this.slotShift = 64 - slotBits;
+            this.entries = new Object[2 << slotBits];
+
+            for (int index = 0; index < placedCount; index++) {
+
+                final int slot = this.getSlot(hashes[placed[index]]);
+                this.entries[slot] = keys[placed[index]];
+                this.entries[slot + 1] = values[placed[index]];
+            }
+
+            // The identity table falls back to the equality table, so it does not need these.
+            this.overflow = new Object[identity ? 0 : overflowCount * 2];
+
+            for (int index = 0; index < this.overflow.length; index += 2) {
+
+                this.overflow[index] = keys[overflow[index / 2]];
+                this.overflow[index + 1] = values[overflow[index / 2]];
+            }
+        }
+
+        /**
+         * Gets the index in {@link #entries} of the only slot a hash can be in.
+         *
+         * @param hash The hash of the identifier.
+         * @return The index of the key for the slot. The value follows it.
+         */
+        int getSlot (long hash) {
+
+            final int seed = this.seeds[(int) (hash >>> this.bucketShift)];
+            return (int) ((hash ^ seed * SEED_MULTIPLIER) * MULTIPLIER >>> this.slotShift) << 1;
+        }
+
+        /**
+         * Finds the value for an identifier which is equal to a key in the table.
+         *
+         * @param identifier The identifier to search for.
+         * @return The value of the identifier, or null if it was not found.
+         */
+        Object getEqual (Identifier identifier) {
+
+            final int slot = this.getSlot(hash(identifier, this.identity));
+            final Object key = this.entries[slot];
+
+            if (key == identifier || key != null && key.equals(identifier)) {
+                return this.entries[slot + 1];
+            }
+
+            for (int index = 0; index < this.overflow.length; index += 2) {
+                if (this.overflow[index].equals(identifier)) {
+                    return this.overflow[index + 1];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Finds the value for an identifier string which is equal to a key in the table.
+         *
+         * @param text The identifier string.
+         * @param defaultDomain The domain to use if the string does not have one, otherwise
+         *        null.
+         * @param domainEnd The index after the domain in the string.
+         * @param nameStart The index of the first char of the name in the string.
+         * @param hashCode The hash code the Identifier for the string would have.
+         * @return The value of the identifier, or null if it was not found.
+         */
+        Object getEqual (String text, String defaultDomain, int domainEnd, int nameStart, int hashCode) {
+
+            final int slot = this.getSlot(hashCode * MULTIPLIER);
+            final Identifier key = (Identifier) this.entries[slot];
+
+            if (key != null && matches(key, text, defaultDomain, domainEnd, nameStart)) {
+                return this.entries[slot + 1];
+            }
+
+            for (int index = 0; index < this.overflow.length; index += 2) {
+                if (matches((Identifier) this.overflow[index], text, defaultDomain, domainEnd, nameStart)) {
+                    return this.overflow[index + 1];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Tries to find a seed for every bucket, so that every key has its own slot.
+         *
+         * @param hashes The hash of every key.
+         * @param placed The indexes of the keys to place.
+         * @param count The amount of keys to place.
+         * @param bucketBits The amount of bits used for bucket indexes.
+         * @param slotBits The amount of bits used for slot indexes.
+         * @return The seed for each bucket, or null if the keys could not be placed.
+         */
+        private static int[] place (long[] hashes, int[] placed, int count, int bucketBits, int slotBits) {
+
+            final int buckets = 1 << bucketBits;
+            final int[] bucketStart = new int[buckets + 1];
+            final int[] members = new int[count];
+
+            // Groups the keys by bucket, using a counting sort.
+            for (int index = 0; index < count; index++) {
+                bucketStart[(int) (hashes[placed[index]] >>> 64 - bucketBits) + 1]++;
+            }
+
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                bucketStart[bucket + 1] += bucketStart[bucket];
+            }
+
+            final int[] next = Arrays.copyOf(bucketStart, buckets);
+
+            for (int index = 0; index < count; index++) {
+                members[next[(int) (hashes[placed[index]] >>> 64 - bucketBits)]++] = placed[index];
+            }
+
+            // Placing the largest buckets first, while the table is mostly empty, is much faster.
+            final long[] order = new long[buckets];
+
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                order[bucket] = (long) (bucketStart[bucket] - bucketStart[bucket + 1]) << 32 | bucket;
+            }
+
+            Arrays.sort(order);
+
+            final int[] seeds = new int[buckets];
+            final boolean[] used = new boolean[1 << slotBits];
+
+            for (final long entry : order) {
+
+                final int bucket = (int) entry;
+                final int start = bucketStart[bucket];
+                final int end = bucketStart[bucket + 1];
+
+                if (start == end) {
+                    break;
+                }
+
+                int seed = 0;
+
+                while (!tryPlace(hashes, members, start, end, seed, used, 64 - slotBits)) {
+
+                    if (++seed == MAX_SEED) {
+                        return null;
+                    }
+                }
+
+                seeds[bucket] = seed;
+            }
+
+            return seeds;
+        }
+
+        /**
+         * Tries to place every key of a bucket using a seed. If all keys fit, their slots are
+         * marked as used.
+         *
+         * @param hashes The hash of every key.
+         * @param members The keys grouped by bucket.
+         * @param start The index of the first key of the bucket in members.
+         * @param end The index after the last key of the bucket in members.
+         * @param seed The seed to try.
+         * @param used The slots which are already used.
+         * @param slotShift The amount of bits to shift a mixed hash by to get its slot.
+         * @return Whether or not all keys were placed.
+         */
+        private static boolean tryPlace (long[] hashes, int[] members, int start, int end, int seed, boolean[] used, int slotShift) {
+
+            for (int index = start; index < end; index++) {
+
+                final int slot = (int) ((hashes[members[index]] ^ seed * SEED_MULTIPLIER) * MULTIPLIER >>> slotShift);
+
+                if (used[slot]) {
+
+                    for (int previous = start; previous < index; previous++) {
+                        used[(int) ((hashes[members[previous]] ^ seed * SEED_MULTIPLIER) * MULTIPLIER >>> slotShift)] = false;
+                    }
+
+                    return false;
+                }
+
+                used[slot] = true;
+            }
+
+            return true;
+        }
+
+        /**
+         * Gets the amount of bits needed for a power of two which is at least a value.
+         *
+         * @param value The value.
+         * @return The amount of bits.
+         */
+        private static int bits (int value) {
+
+            return 32 - Integer.numberOfLeadingZeros(value - 1);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.epoxide.commons.rand;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link LaneKernel} which uses the Vector API to advance as many lanes at once as the
+ * preferred vector size holds. Each group of lanes is kept in vectors for every step, and is
+ * only written back to the state arrays at the end. This is loaded by
+ * {@link MultiLaneXoshiro} when it is available, which requires Java 16 or later with the
+ * jdk.incubator.vector module added.
+ */
+final class VectorLaneKernel implements LaneKernel {
+
+    /**
+     * The vector species used for the lanes.
+     */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructs the kernel. Only called reflectively by {@link MultiLaneXoshiro}.
+     *
+     * @throws UnsupportedOperationException If the platform can not hold more than one long
+     *         in a vector, in which case the scalar loop is just as fast.
+     */
+    VectorLaneKernel () {
+
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("Vectors only hold " + SPECIES.length() + " long");
+        }
+    }
+
+    @Override
+    public int fill (long[] s0, long[] s1, long[] s2, long[] s3, long[] out, int from, int steps) {
+
+        final int lanes = s0.length;
+        final int bound = SPECIES.loopBound(lanes);
+
+        for (int lane = 0; lane < bound; lane += SPECIES.length()) {
+
+            LongVector a = LongVector.fromArray(SPECIES, s0, lane);
+            LongVector b = LongVector.fromArray(SPECIES, s1, lane);
+            LongVector c = LongVector.fromArray(SPECIES, s2, lane);
+            LongVector d = LongVector.fromArray(SPECIES, s3, lane);
+
+            for (int step = 0, offset = from + lane; step < steps; step++, offset += lanes) {
+
+                a.add(d).lanewise(VectorOperators.ROL, 23).add(a).intoArray(out, offset);
+                final LongVector mixedC = c.lanewise(VectorOperators.XOR, a);
+                final LongVector mixedD = d.lanewise(VectorOperators.XOR, b);
+                a = a.lanewise(VectorOperators.XOR, mixedD);
+                c = mixedC.lanewise(VectorOperators.XOR, b.lanewise(VectorOperators.LSHL, 17));
+                b = b.lanewise(VectorOperators.XOR, mixedC);
+                d = mixedD.lanewise(VectorOperators.ROL, 45);
+            }
+
+            a.intoArray(s0, lane);
+            b.intoArray(s1, lane);
+            c.intoArray(s2, lane);
+            d.intoArray(s3, lane);
+        }
+
+        return bound;
+    }
+}